@@ -17,6 +17,9 @@ import static java.sql.Connection.*;
  * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com</a>
  */
 public class Args {
+
+	private static final TemplateTokenizer SYSTEM_PROPERTY_TOKENIZER = new TemplateTokenizer("{", "}", TemplateTokenizer.NO_ESCAPE);
+
 	protected Args() {
 
 	}
@@ -41,7 +44,7 @@ public class Args {
 	 */
 	public static void positive(Number o, String fieldName) {
 		notNull(o, fieldName);
-		if (((Integer) o.intValue()).compareTo(0) <= 0) {
+		if (o.intValue() <= 0) {
 			throw new IllegalArgumentException(fieldName + " must be positive. Got " + o);
 		}
 	}
@@ -74,7 +77,7 @@ public class Args {
 		for (T element : sequence) {
 			if (element == null) {
 				throw new IllegalArgumentException("Illegal " + fieldName + " list. Null elements are not allowed. Got " + Arrays.toString(sequence));
-			} else if (element instanceof String && element.toString().trim().isEmpty()) {
+			} else if (element instanceof String && isBlank((String) element)) {
 				throw new IllegalArgumentException("Illegal " + fieldName + " list. Blank elements are not allowed. Got " + Arrays.toString(sequence));
 			}
 		}
@@ -95,7 +98,7 @@ public class Args {
 		for (T element : elements) {
 			if (element == null) {
 				throw new IllegalArgumentException("Illegal " + fieldName + " list. Null elements are not allowed. Got " + elements);
-			} else if (element instanceof String && element.toString().trim().isEmpty()) {
+			} else if (element instanceof String && isBlank((String) element)) {
 				throw new IllegalArgumentException("Illegal " + fieldName + " list. Blank elements are not allowed. Got " + elements);
 			}
 		}
@@ -149,11 +152,45 @@ public class Args {
 	 */
 	public static void notBlank(CharSequence o, String fieldName) {
 		notNull(o, fieldName);
-		if (o.toString().trim().isEmpty()) {
+		if (isBlank(o)) {
 			throw new IllegalArgumentException(fieldName + " cannot be blank");
 		}
 	}
 
+	/**
+	 * Ensures a given array argument is not null, and none of its elements are null. Unlike
+	 * {@link #notEmpty(Object[], String)}, empty arrays and blank {@code String}s are accepted.
+	 *
+	 * @param elements  the array of objects
+	 * @param fieldName the description of the field
+	 * @param <T>       the type of elements in the array
+	 */
+	public static <T> void notNullAll(T[] elements, String fieldName) {
+		notNull(elements, fieldName);
+		for (int i = 0; i < elements.length; i++) {
+			if (elements[i] == null) {
+				throw new IllegalArgumentException("Illegal " + fieldName + " list. Null elements are not allowed. Got null at index " + i + " of " + Arrays.toString(elements));
+			}
+		}
+	}
+
+	/**
+	 * Ensures a given collection is not null, and none of its elements are null. Unlike
+	 * {@link #notEmpty(Collection, String)}, empty collections and blank {@code String}s are accepted.
+	 *
+	 * @param elements  the collection of objects
+	 * @param fieldName the description of the field
+	 * @param <T>       the type of elements in the collection
+	 */
+	public static <T> void notNullAll(Collection<T> elements, String fieldName) {
+		notNull(elements, fieldName);
+		for (T element : elements) {
+			if (element == null) {
+				throw new IllegalArgumentException("Illegal " + fieldName + " list. Null elements are not allowed. Got " + elements);
+			}
+		}
+	}
+
 	/**
 	 * Ensures a given {@link File} argument is not null, exists and does not point to a directory
 	 *
@@ -194,7 +231,7 @@ public class Args {
 			name = name.substring(0, name.lastIndexOf('.'));
 		}
 
-		if (name.trim().isEmpty()) {
+		if (isBlank(name)) {
 			throw new IllegalArgumentException("Cannot derive " + fieldName + " from file " + file.getAbsolutePath());
 		}
 
@@ -210,7 +247,20 @@ public class Args {
 	 * @return {@code true} if the given {@code String} is null, empty or blank, otherwise returns {@code false}
 	 */
 	public static boolean isBlank(String s) {
-		return s == null || s.trim().isEmpty();
+		return s == null || isBlank((CharSequence) s);
+	}
+
+	/**
+	 * Tests if all characters of a given sequence are whitespace, i.e. the characters that {@link String#trim()}
+	 * removes. Characters are scanned in place, so that no {@code String} is allocated.
+	 */
+	private static boolean isBlank(CharSequence s) {
+		for (int i = s.length() - 1; i >= 0; i--) {
+			if (s.charAt(i) > ' ') {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	/**
@@ -226,38 +276,42 @@ public class Args {
 
 	/**
 	 * Replaces system properties between { and } in a given {@code String} with the property values, and returns the result.
-	 * Unknown properties won't be replaced.
+	 * Unknown properties won't be replaced, unless a default value is provided after a colon, e.g. {@code {app.dir:/tmp}}.
+	 * Default values can contain other system properties, e.g. {@code {app.dir:{user.home}/app}}.
+	 *
+	 * Backslashes are not treated as escape characters here, so that Windows paths such as {@code C:\{user.name}} work
+	 * as expected.
 	 *
 	 * @param string the {@code String} with potential system properties.
 	 *
 	 * @return the resulting {@code String} with all known system properties replaced.
 	 */
 	public static String replaceSystemProperties(String string) {
-		int offset = 0;
-		int braceOpen = 0;
-		while (braceOpen >= 0) {
-			braceOpen = string.indexOf('{', offset);
-			if (braceOpen >= 0) {
-				offset = braceOpen;
-				int braceClose = string.indexOf('}');
-				if (braceClose > braceOpen) {
-					offset = braceClose;
-					String property = string.substring(braceOpen + 1, braceClose);
-					String value = System.getProperty(property);
-					if (value != null) {
-						String beforeProperty = string.substring(0, braceOpen);
-						String afterProperty = "";
-						if (braceClose < string.length()) {
-							afterProperty = string.substring(braceClose + 1, string.length());
-						}
-						string = beforeProperty + value + afterProperty;
-					}
-				}
-
-			} else {
-				break;
+		if (string == null || string.indexOf('{') == -1) {
+			return string;
+		}
+
+		StringBuilder out = new StringBuilder(string.length() + 32);
+		for (TemplateTokenizer.Token token : SYSTEM_PROPERTY_TOKENIZER.tokenize(string)) {
+			if (!token.isPlaceholder()) {
+				out.append(token.getContent());
+				continue;
+			}
+
+			String property = token.getContent();
+			String defaultValue = null;
+			int colon = property.indexOf(':');
+			if (colon != -1) {
+				defaultValue = property.substring(colon + 1);
+				property = property.substring(0, colon);
+			}
+
+			String value = property.isEmpty() ? null : System.getProperty(property);
+			if (value == null && defaultValue != null) {
+				value = replaceSystemProperties(defaultValue);
 			}
+			out.append(value == null ? token.getOriginalText() : value);
 		}
-		return string;
+		return out.toString();
 	}
 }
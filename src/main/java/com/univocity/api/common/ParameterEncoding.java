@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2013 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ */
+
+package com.univocity.api.common;
+
+import java.io.*;
+
+/**
+ * The encoding context of a parameter of a {@link ParameterizedTemplate}. Values of parameters that declare an
+ * encoding context are percent-encoded (using UTF-8) while the template is rendered, directly into the output, so
+ * they don't need to be encoded beforehand. The encoding context is declared as the last step of the format of a
+ * parameter, e.g. <code>http://example.com/{folder, path}/?q={query, query}</code>.
+ *
+ * Values made only of characters that are allowed in the given context are appended as they are, without any
+ * intermediate copies.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com</a>
+ * @see ParameterizedTemplate#getEncoding(String)
+ */
+public enum ParameterEncoding {
+
+	/**
+	 * Values are not encoded. Declared as <code>{name, raw}</code>
+	 */
+	RAW("raw", null),
+
+	/**
+	 * Values are encoded to be used as a segment of the path of a URL. Any character other than unreserved characters,
+	 * sub-delimiters, {@code :} and {@code @} is encoded, including {@code /}, {@code ?} and {@code #}.
+	 * Declared as <code>{name, path}</code>
+	 */
+	PATH_SEGMENT("path", "!$&'()*+,;=:@"),
+
+	/**
+	 * Values are encoded to be used as the name or value of a parameter in the query of a URL. Any character other
+	 * than unreserved characters and {@code !$'()*,;:@/?} is encoded, including {@code &}, {@code =}, {@code +} and
+	 * {@code #}. Spaces are encoded as {@code %20}. Declared as <code>{name, query}</code>
+	 */
+	QUERY_VALUE("query", "!$'()*,;:@/?");
+
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	private final String name;
+	private final boolean[] allowed;
+
+	ParameterEncoding(String name, String allowedSymbols) {
+		this.name = name;
+		if (allowedSymbols == null) {
+			this.allowed = null;
+		} else {
+			this.allowed = new boolean[128];
+			for (char ch = 'a'; ch <= 'z'; ch++) {
+				allowed[ch] = true;
+				allowed[Character.toUpperCase(ch)] = true;
+			}
+			for (char ch = '0'; ch <= '9'; ch++) {
+				allowed[ch] = true;
+			}
+			allowed['-'] = allowed['.'] = allowed['_'] = allowed['~'] = true;
+			for (int i = 0; i < allowedSymbols.length(); i++) {
+				allowed[allowedSymbols.charAt(i)] = true;
+			}
+		}
+	}
+
+	/**
+	 * Returns the name used to declare this encoding context in the format of a parameter.
+	 *
+	 * @return the name of this encoding context.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the encoding context declared with a given name, if any.
+	 *
+	 * @param name the name used in the format of a parameter, i.e. {@code raw}, {@code path} or {@code query}.
+	 *
+	 * @return the corresponding encoding context, or {@code null} if no encoding context has the given name.
+	 */
+	static ParameterEncoding fromName(String name) {
+		for (ParameterEncoding encoding : values()) {
+			if (encoding.name.equals(name)) {
+				return encoding;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Encodes a given value according to this encoding context.
+	 *
+	 * @param value the value to encode
+	 *
+	 * @return the encoded value
+	 */
+	public String encode(CharSequence value) {
+		if (value == null) {
+			return null;
+		}
+		if (allowed == null || findFirstToEncode(value) == value.length()) {
+			return value.toString();
+		}
+		StringBuilder out = new StringBuilder(value.length() + 16);
+		try {
+			encode(value, out);
+		} catch (IOException e) {
+			//can't happen with a StringBuilder
+			throw new IllegalStateException(e);
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Encodes a given value according to this encoding context and appends the result to a given output.
+	 *
+	 * @param value the value to encode
+	 * @param out   the output that will receive the encoded value
+	 *
+	 * @throws IOException if the output can't be written to
+	 */
+	public void encode(CharSequence value, Appendable out) throws IOException {
+		int length = value.length();
+		int start = allowed == null ? length : findFirstToEncode(value);
+		if (start == length) {
+			out.append(value);
+			return;
+		}
+		out.append(value, 0, start);
+
+		for (int i = start; i < length; i++) {
+			char ch = value.charAt(i);
+			if (ch < 128) {
+				if (allowed[ch]) {
+					out.append(ch);
+				} else {
+					appendByte(ch, out);
+				}
+			} else if (ch < 0x800) {
+				appendByte(0xC0 | (ch >> 6), out);
+				appendByte(0x80 | (ch & 0x3F), out);
+			} else if (Character.isHighSurrogate(ch) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(ch, value.charAt(++i));
+				appendByte(0xF0 | (codePoint >> 18), out);
+				appendByte(0x80 | ((codePoint >> 12) & 0x3F), out);
+				appendByte(0x80 | ((codePoint >> 6) & 0x3F), out);
+				appendByte(0x80 | (codePoint & 0x3F), out);
+			} else {
+				if (ch >= Character.MIN_SURROGATE && ch <= Character.MAX_SURROGATE) {
+					ch = '\uFFFD'; //unpaired surrogate
+				}
+				appendByte(0xE0 | (ch >> 12), out);
+				appendByte(0x80 | ((ch >> 6) & 0x3F), out);
+				appendByte(0x80 | (ch & 0x3F), out);
+			}
+		}
+	}
+
+	private int findFirstToEncode(CharSequence value) {
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char ch = value.charAt(i);
+			if (ch >= 128 || !allowed[ch]) {
+				return i;
+			}
+		}
+		return length;
+	}
+
+	private static void appendByte(int b, Appendable out) throws IOException {
+		out.append('%');
+		out.append(HEX[(b >> 4) & 0xF]);
+		out.append(HEX[b & 0xF]);
+	}
+}
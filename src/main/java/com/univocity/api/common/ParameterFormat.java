@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2013 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ */
+
+package com.univocity.api.common;
+
+import java.io.*;
+import java.net.*;
+import java.text.*;
+import java.util.*;
+
+/**
+ * A precompiled formatting pipeline associated with a parameter of a {@link ParameterizedTemplate}. The format is
+ * given after a comma in the parameter declaration, e.g. <code>{amount, number:#,##0.00}</code>, and can contain
+ * multiple steps separated by {@code |}, which are applied in sequence: <code>{id, number:0|lpad:8:0}</code>.
+ *
+ * Supported steps are:
+ * <ul>
+ * <li><code>number:pattern</code> formats {@link Number} values using a {@link DecimalFormat} pattern</li>
+ * <li><code>date:pattern</code> formats {@link Date} and {@link Calendar} values using a {@link SimpleDateFormat}
+ * pattern</li>
+ * <li><code>lpad:length[:char]</code> pads the value on the left up to a given length (with spaces by default)</li>
+ * <li><code>rpad:length[:char]</code> pads the value on the right up to a given length (with spaces by default)</li>
+ * <li><code>url</code> encodes the value with {@link URLEncoder} using UTF-8</li>
+ * </ul>
+ *
+ * Steps that don't start with any of the above are ignored, so formats that are only used as free-form tags,
+ * obtained with {@link ParameterizedString#getFormat(String)}, don't change the rendered values.
+ *
+ * Formats are compiled once, when the template is parsed. {@link DecimalFormat} and {@link SimpleDateFormat}
+ * are not thread-safe, so each thread uses its own copy of a compiled format, created on first use.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com</a>
+ */
+final class ParameterFormat {
+
+	private final Step[] steps;
+
+	private ParameterFormat(Step[] steps) {
+		this.steps = steps;
+	}
+
+	/**
+	 * Compiles a format declared in a parameter of a {@link ParameterizedTemplate}.
+	 *
+	 * @param format the format declaration.
+	 *
+	 * @return the compiled formatting pipeline, or {@code null} if the format has no known formatting steps.
+	 *
+	 * @throws IllegalArgumentException if a formatting step is invalid
+	 */
+	static ParameterFormat compile(String format) throws IllegalArgumentException {
+		String[] declarations = format.split("\\|");
+		List<Step> steps = new ArrayList<Step>(declarations.length);
+		for (String declaration : declarations) {
+			Step step = compileStep(declaration.trim(), format);
+			if (step != null) {
+				steps.add(step);
+			}
+		}
+		if (steps.isEmpty()) {
+			return null;
+		}
+		return new ParameterFormat(steps.toArray(new Step[steps.size()]));
+	}
+
+	private static Step compileStep(String step, String format) {
+		try {
+			if (step.startsWith("number:")) {
+				return new FormatStep(new DecimalFormat(step.substring("number:".length())), Number.class);
+			} else if (step.startsWith("date:")) {
+				return new FormatStep(new SimpleDateFormat(step.substring("date:".length())), Date.class);
+			} else if (step.startsWith("lpad:")) {
+				return new PadStep(step.substring("lpad:".length()), true);
+			} else if (step.startsWith("rpad:")) {
+				return new PadStep(step.substring("rpad:".length()), false);
+			} else if (step.equals("url")) {
+				return new UrlStep();
+			}
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid formatting step '" + step + "' in format '" + format + "'", e);
+		}
+		return null;
+	}
+
+	/**
+	 * Applies all steps of this formatting pipeline to a given value.
+	 *
+	 * @param value the value to format. Never {@code null}.
+	 *
+	 * @return the formatted value
+	 */
+	Object apply(Object value) {
+		for (int i = 0; i < steps.length; i++) {
+			value = steps[i].apply(value);
+		}
+		return value;
+	}
+
+	private interface Step {
+		Object apply(Object value);
+	}
+
+	private static final class FormatStep implements Step {
+		private final Class<?> type;
+		private final ThreadLocal<Format> format;
+
+		FormatStep(final Format prototype, Class<?> type) {
+			this.type = type;
+			this.format = new ThreadLocal<Format>() {
+				@Override
+				protected Format initialValue() {
+					return (Format) prototype.clone();
+				}
+			};
+		}
+
+		@Override
+		public Object apply(Object value) {
+			if (value instanceof Calendar) {
+				value = ((Calendar) value).getTime();
+			}
+			if (type.isInstance(value)) {
+				return format.get().format(value);
+			}
+			return value;
+		}
+	}
+
+	private static final class PadStep implements Step {
+		private final int length;
+		private final char padding;
+		private final boolean left;
+
+		PadStep(String declaration, boolean left) {
+			int colon = declaration.indexOf(':');
+			String length = colon == -1 ? declaration : declaration.substring(0, colon);
+			this.length = Integer.parseInt(length.trim());
+			if (colon == -1 || colon == declaration.length() - 1) {
+				this.padding = ' ';
+			} else {
+				this.padding = declaration.charAt(colon + 1);
+			}
+			this.left = left;
+		}
+
+		@Override
+		public Object apply(Object value) {
+			String string = String.valueOf(value);
+			if (string.length() >= length) {
+				return string;
+			}
+			StringBuilder out = new StringBuilder(length);
+			if (!left) {
+				out.append(string);
+			}
+			for (int i = string.length(); i < length; i++) {
+				out.append(padding);
+			}
+			if (left) {
+				out.append(string);
+			}
+			return out.toString();
+		}
+	}
+
+	private static final class UrlStep implements Step {
+		@Override
+		public Object apply(Object value) {
+			try {
+				return URLEncoder.encode(String.valueOf(value), "UTF-8");
+			} catch (UnsupportedEncodingException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+}
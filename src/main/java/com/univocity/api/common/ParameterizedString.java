@@ -6,7 +6,11 @@
 
 package com.univocity.api.common;
 
+import java.io.*;
+import java.math.*;
+import java.nio.charset.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Utility class for handling {@code String}s with parameters. Use {@link #set(String, Object)} to set a parameter value,
@@ -15,36 +19,64 @@ import java.util.*;
  * Parameters without values provided will not be replaced, therefore the string "zero/{one}/{two}/{one}", with parameter
  * "one" set to 27 will evaluate to "zero/27/{two}/27"
  *
+ * The parsed structure of the input {@code String} is held by an immutable {@link ParameterizedTemplate}, which is
+ * shared between clones and between all instances created with {@link ParameterizedTemplate#bind()}. Each
+ * {@code ParameterizedString} only holds its own parameter values, so it is cheap to create one per thread or request.
+ *
+ * The result of {@link #applyParameterValues()} is rendered incrementally: the output produced up to the first
+ * occurrence of a modified parameter is kept and only the remainder of the string is rendered again. Parameters
+ * that change often (such as page numbers) should therefore appear towards the end of the string. The output of a
+ * parameter is only reused if its value is immutable ({@code String}s, numbers of the {@code java.lang} and
+ * {@code java.math} packages, {@code Boolean}, {@code Character} and enums). Other values, such as
+ * {@code StringBuilder}s, dates or collections, may have been modified since the last call, so everything from their
+ * first occurrence onwards is always rendered again.
+ *
+ * Values of type {@link Reader} can only be read once: once rendered, their content is kept in the result of
+ * {@link #applyParameterValues()}, but any attempt to render them again (for example with {@link #writeTo(Writer)},
+ * or after a parameter that precedes them changes) is rejected with an {@code IllegalStateException}. Use a
+ * {@link com.univocity.api.io.ResourceProvider} of {@link Reader} to render the same content multiple times.
+ *
  * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com</a>
  */
 public class ParameterizedString implements Cloneable {
 
-	private final String string;
-	private final List<Parameter> parameters = new ArrayList<Parameter>();
-	private final Set<String> parameterNames = new TreeSet<String>();
-	private final String openBracket;
-	private final String closeBracket;
-	private TreeMap<String, Object> parameterValues;
+	private final ParameterizedTemplate template;
+	private Object[] parameterValues;
 	private String result = null;
 
+	private StringBuilder buffer;
+	private int[] offsets;
+	private int firstChange = 0;
+	private boolean[] consumedReaders;
+
+	private static final int BATCH_SIZE = 512;
+	private static final int MAX_PENDING_BATCHES = 16;
 
 	/**
-	 * Creates a new parameterized string with custom open and closing brackets
+	 * Creates a new parameterized string with custom open and closing brackets. The parsed structure of the string
+	 * is obtained from the global template cache (see {@link ParameterizedTemplate#compile(String, String, String)})
 	 *
 	 * @param string       the string with parameters
 	 * @param openBracket  the open bracket (before a parameter name)
 	 * @param closeBracket the close bracket (after a paramter name)
 	 */
 	public ParameterizedString(String string, String openBracket, String closeBracket) {
-		Args.notBlank(string, "Input string");
-		Args.notBlank(openBracket, "Open bracket");
-		Args.notBlank(closeBracket, "Close bracket");
+		this(ParameterizedTemplate.compile(string, openBracket, closeBracket));
+	}
 
-		this.parameterValues = new TreeMap<String, Object>();
-		this.openBracket = openBracket;
-		this.closeBracket = closeBracket;
-		this.string = string;
-		collectParameters();
+	/**
+	 * Creates a new parameterized string with custom open and closing brackets, optionally enabling the extended
+	 * syntax for default values (<code>{page:1}</code>) and escaped open brackets (<code>\{literal}</code>).
+	 * The parsed structure of the string is obtained from the global template cache (see
+	 * {@link ParameterizedTemplate#compile(String, String, String, boolean)})
+	 *
+	 * @param string         the string with parameters
+	 * @param openBracket    the open bracket (before a parameter name)
+	 * @param closeBracket   the close bracket (after a paramter name)
+	 * @param extendedSyntax flag indicating whether default values and escaping are supported.
+	 */
+	public ParameterizedString(String string, String openBracket, String closeBracket, boolean extendedSyntax) {
+		this(ParameterizedTemplate.compile(string, openBracket, closeBracket, extendedSyntax));
 	}
 
 	/**
@@ -56,22 +88,51 @@ public class ParameterizedString implements Cloneable {
 		this(string, "{", "}");
 	}
 
+	/**
+	 * Creates a new parameterized string bound to an existing template. The template is shared, not copied.
+	 *
+	 * @param template the parsed template with parameters
+	 */
+	public ParameterizedString(ParameterizedTemplate template) {
+		Args.notNull(template, "Template");
+		this.template = template;
+		this.parameterValues = new Object[template.slotCount()];
+	}
 
-	private void collectParameters() {
-		int x = 0;
-		int openBracketIndex;
-		while ((openBracketIndex = string.indexOf(openBracket, x)) >= 0) {
-			int closeBracketIndex = string.indexOf(closeBracket, openBracketIndex);
-			if (closeBracketIndex > 0) {
-				x = closeBracketIndex;
-				String parameterizedName = string.substring(openBracketIndex + 1, closeBracketIndex);
-				Parameter parameter = new Parameter(parameterizedName, openBracketIndex, closeBracketIndex + 1);
-				parameters.add(parameter);
-				parameterNames.add(parameter.name);
-			} else {
-				x = openBracketIndex + 1;
-			}
-		}
+	/**
+	 * Returns the immutable template used by this parameterized string. The template can be shared among threads,
+	 * each one working with its own {@code ParameterizedString} obtained via {@link ParameterizedTemplate#bind()}.
+	 *
+	 * @return the template with the parsed structure of this parameterized string.
+	 */
+	public final ParameterizedTemplate getTemplate() {
+		return template;
+	}
+
+	/**
+	 * Returns the index of the slot that holds the value of a given parameter. The index can be used with
+	 * {@link #set(int, Object)} and {@link #get(int)} to manipulate parameter values without looking up parameter
+	 * names, which is useful when the same parameterized string is filled repeatedly in a loop.
+	 *
+	 * Slot indexes follow the order of the names in {@link #getParameters()}
+	 *
+	 * @param parameter the parameter name
+	 *
+	 * @return the index of the slot associated with the given parameter
+	 *
+	 * @throws IllegalArgumentException if the parameter name does not exist
+	 */
+	public final int slot(String parameter) throws IllegalArgumentException {
+		return template.slot(parameter);
+	}
+
+	/**
+	 * Returns the number of distinct parameters, i.e. the number of slots available in this parameterized string.
+	 *
+	 * @return the number of slots that can be used with {@link #set(int, Object)} and {@link #get(int)}
+	 */
+	public final int slotCount() {
+		return parameterValues.length;
 	}
 
 	/**
@@ -83,11 +144,40 @@ public class ParameterizedString implements Cloneable {
 	 * @throws IllegalArgumentException if the parameter name does not exist
 	 */
 	public final void set(String parameter, Object value) throws IllegalArgumentException {
-		validateParameterName(parameter);
-		parameterValues.put(parameter, value);
+		set(slot(parameter), value);
+	}
+
+	/**
+	 * Sets the value of a parameter slot obtained via {@link #slot(String)}
+	 *
+	 * @param slot  the index of the parameter slot
+	 * @param value the parameter value
+	 *
+	 * @throws IndexOutOfBoundsException if the slot index is invalid
+	 */
+	public final void set(int slot, Object value) throws IndexOutOfBoundsException {
+		parameterValues[slot] = value;
+		if (consumedReaders != null) {
+			consumedReaders[slot] = false;
+		}
+		int occurrence = template.firstOccurrence(slot);
+		if (occurrence < firstChange) {
+			firstChange = occurrence;
+		}
 		result = null;
 	}
 
+	/**
+	 * Sets the value of a parameter slot only if it differs from the current value, so that the rendered output of
+	 * the parameter can be reused when consecutive rows share the same values.
+	 */
+	private void update(int slot, Object value) {
+		Object current = parameterValues[slot];
+		if (value != current && (value == null || !value.equals(current))) {
+			set(slot, value);
+		}
+	}
+
 	/**
 	 * Returns the value of a given parameter.
 	 *
@@ -98,15 +188,20 @@ public class ParameterizedString implements Cloneable {
 	 * @throws IllegalArgumentException if the parameter name does not exist
 	 */
 	public final Object get(String parameter) throws IllegalArgumentException {
-		validateParameterName(parameter);
-		return parameterValues.get(parameter);
+		return parameterValues[slot(parameter)];
 	}
 
-	private void validateParameterName(String parameter) {
-		Args.notBlank(parameter, "Parameter name");
-		if (!parameterNames.contains(parameter)) {
-			throw new IllegalArgumentException("Parameter '" + parameter + "' not found in " + string + ". Available parameters: " + parameterNames);
-		}
+	/**
+	 * Returns the value of a parameter slot obtained via {@link #slot(String)}
+	 *
+	 * @param slot the index of the parameter slot
+	 *
+	 * @return the parameter value
+	 *
+	 * @throws IndexOutOfBoundsException if the slot index is invalid
+	 */
+	public final Object get(int slot) throws IndexOutOfBoundsException {
+		return parameterValues[slot];
 	}
 
 	/**
@@ -116,7 +211,7 @@ public class ParameterizedString implements Cloneable {
 	 */
 	@Override
 	public final String toString() {
-		return string;
+		return template.toString();
 	}
 
 	/**
@@ -128,34 +223,379 @@ public class ParameterizedString implements Cloneable {
 	 * @return the resulting {@code String} with all parameters replaced by their values.
 	 */
 	public final String applyParameterValues() {
-		if (result == null) {
-			result = string;
-			for (int i = parameters.size() - 1; i >= 0; i--) {
-				Object parameterValue = parameterValues.get(parameters.get(i).name);
-				if (parameterValue != null) {
-					int openBracketIndex = parameters.get(i).startPosition;
-					int closedBracketIndex = parameters.get(i).endPosition;
-					result = result.substring(0, openBracketIndex) + parameterValue + result.substring(closedBracketIndex, result.length());
-				}
+		int from = Math.min(firstChange, firstMutableOccurrence());
+		if (result == null || from < template.occurrenceCount()) {
+			ensureReadersAvailable(from);
+			if (buffer == null) {
+				buffer = new StringBuilder(template.toString().length() + (template.occurrenceCount() << 4));
+				offsets = new int[template.occurrenceCount() + 1];
+			}
+			buffer.setLength(offsets[from]);
+			try {
+				template.render(parameterValues, buffer, from, offsets);
+			} catch (IOException e) {
+				buffer.setLength(0);
+				firstChange = 0;
+				result = null;
+				throw new IllegalStateException("Error rendering parameterized string " + template, e);
+			} finally {
+				markReadersConsumed();
 			}
+			firstChange = template.occurrenceCount();
+			result = buffer.toString();
 		}
 		return result;
 	}
 
+	/**
+	 * Returns the index of the first parameter occurrence whose value may have been modified without a call to
+	 * {@link #set(int, Object)}, i.e. the first occurrence of a parameter with a mutable value.
+	 */
+	private int firstMutableOccurrence() {
+		int first = template.occurrenceCount();
+		for (int i = 0; i < parameterValues.length; i++) {
+			if (!isImmutable(parameterValues[i])) {
+				int occurrence = template.firstOccurrence(i);
+				if (occurrence < first) {
+					first = occurrence;
+				}
+			}
+		}
+		return first;
+	}
+
+	/**
+	 * Tests whether the rendered output of a value can be reused. {@link Reader}s are included because their content
+	 * can't change once read.
+	 */
+	private static boolean isImmutable(Object value) {
+		return value == null || value instanceof String || value instanceof Integer || value instanceof Long
+				|| value instanceof Double || value instanceof Float || value instanceof Short || value instanceof Byte
+				|| value instanceof BigDecimal || value instanceof BigInteger || value instanceof Boolean
+				|| value instanceof Character || value instanceof Enum || value instanceof Reader;
+	}
+
+	/**
+	 * Ensures no {@link Reader} value that was already consumed needs to be rendered again.
+	 *
+	 * @param from index of the first parameter occurrence that is going to be rendered.
+	 */
+	private void ensureReadersAvailable(int from) {
+		if (consumedReaders == null) {
+			return;
+		}
+		for (int i = 0; i < consumedReaders.length; i++) {
+			if (consumedReaders[i] && template.lastOccurrence(i) >= from) {
+				throw new IllegalStateException("Value of parameter '" + template.getParameterName(i) + "' of " + template + " is a Reader that has already been consumed. Set a new value, or use a ResourceProvider to render the same content multiple times.");
+			}
+		}
+	}
+
+	private void markReadersConsumed() {
+		for (int i = 0; i < parameterValues.length; i++) {
+			if (parameterValues[i] instanceof Reader) {
+				if (consumedReaders == null) {
+					consumedReaders = new boolean[parameterValues.length];
+				}
+				consumedReaders[i] = true;
+			}
+		}
+	}
+
+	/**
+	 * Applies the parameter values provided using {@link #set(String, Object)} and appends the resulting content to
+	 * a given {@link Appendable}, without producing an intermediate {@code String}.
+	 *
+	 * Parameters without values provided will not be replaced, exactly as in {@link #applyParameterValues()}
+	 *
+	 * @param out the target that will receive the literal content and parameter values of this parameterized string.
+	 *
+	 * @throws IOException if the given {@link Appendable} fails to accept the content.
+	 */
+	public final void applyParameterValues(Appendable out) throws IOException {
+		Args.notNull(out, "Output");
+		if (result != null && firstChange == template.occurrenceCount() && firstMutableOccurrence() == template.occurrenceCount()) {
+			out.append(result);
+		} else {
+			ensureReadersAvailable(0);
+			try {
+				template.render(parameterValues, out);
+			} finally {
+				markReadersConsumed();
+			}
+		}
+	}
+
+	/**
+	 * Applies the parameter values provided using {@link #set(String, Object)} and writes the resulting content
+	 * directly to a given {@link Writer}. Literal content and parameter values are streamed to the output as they
+	 * are rendered: no intermediate {@code String} is produced. Values of type {@link Reader} or
+	 * {@link com.univocity.api.io.ResourceProvider} of {@link Reader} have their content piped into the output.
+	 * A {@link Reader} value is consumed by this method and can't be rendered again, unless its content was
+	 * already captured by a previous call to {@link #applyParameterValues()}.
+	 *
+	 * The given writer is not flushed nor closed by this method.
+	 *
+	 * @param out the target that will receive the content of this parameterized string.
+	 *
+	 * @throws IOException if the given {@link Writer} fails to accept the content, or if a parameter value
+	 *                     can't be read.
+	 */
+	public final void writeTo(Writer out) throws IOException {
+		applyParameterValues(out);
+	}
+
+	/**
+	 * Applies the parameter values provided using {@link #set(String, Object)} and writes the resulting content
+	 * directly to a given {@link OutputStream}, encoded with the given charset. Content is streamed exactly as in
+	 * {@link #writeTo(Writer)}.
+	 *
+	 * The given output stream is flushed but not closed by this method.
+	 *
+	 * @param out     the target that will receive the encoded content of this parameterized string.
+	 * @param charset the charset used to encode the content. If {@code null} the default charset will be used.
+	 *
+	 * @throws IOException if the given {@link OutputStream} fails to accept the content, or if a parameter value
+	 *                     can't be read.
+	 */
+	public final void writeTo(OutputStream out, Charset charset) throws IOException {
+		Args.notNull(out, "Output stream");
+		Writer writer = new OutputStreamWriter(out, charset == null ? Charset.defaultCharset() : charset);
+		writeTo(writer);
+		writer.flush();
+	}
+
+	/**
+	 * Renders this parameterized string once for each row of values provided by an {@link Iterator}. Results are
+	 * produced lazily, as the returned iterator is consumed, and a single buffer is reused to render all rows.
+	 *
+	 * The values of each row are assigned to the given parameters, in order. If no parameters are given, each row
+	 * must provide one value per slot (see {@link #slot(String)}). Parameters that are not given values by the rows
+	 * keep the values currently set in this parameterized string, which is not modified by this method.
+	 *
+	 * @param rows       the rows of parameter values
+	 * @param parameters the names of the parameters that receive the values of each row, in order.
+	 *
+	 * @return an iterator over the rendered results, one for each row.
+	 *
+	 * @throws IllegalArgumentException if a parameter name does not exist, or if a row has an unexpected number of values.
+	 */
+	public final Iterator<String> renderAll(Iterator<Object[]> rows, String... parameters) throws IllegalArgumentException {
+		Args.notNull(rows, "Rows of parameter values");
+		return new RowRenderer(this, rows, getSlots(parameters));
+	}
+
+	/**
+	 * Renders this parameterized string once for each map of parameter values provided by an {@link Iterable}.
+	 * Results are produced lazily, as the returned iterator is consumed, and a single buffer is reused to render all
+	 * rows.
+	 *
+	 * Parameters not present in a map keep the values currently set in this parameterized string, which is not
+	 * modified by this method. Map keys that don't match a parameter are ignored.
+	 *
+	 * @param rows the maps of parameter names and their values
+	 *
+	 * @return an iterator over the rendered results, one for each map.
+	 */
+	public final Iterator<String> renderAll(Iterable<? extends Map<String, ?>> rows) {
+		Args.notNull(rows, "Rows of parameter values");
+		final Iterator<? extends Map<String, ?>> maps = rows.iterator();
+		final ParameterizedString binding = this.clone();
+		final Object[] defaults = parameterValues.clone();
+		return new Iterator<String>() {
+			@Override
+			public boolean hasNext() {
+				return maps.hasNext();
+			}
+
+			@Override
+			public String next() {
+				Map<String, ?> row = maps.next();
+				for (int i = 0; i < defaults.length; i++) {
+					String parameter = template.getParameterName(i);
+					binding.update(i, row.containsKey(parameter) ? row.get(parameter) : defaults[i]);
+				}
+				return binding.applyParameterValues();
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Renders this parameterized string once for each row of values provided by an {@link Iterator}, and sends each
+	 * result to a given {@link NotificationHandler} as soon as it is produced. The last result is sent with the
+	 * {@code lastNotification} flag set to {@code true}.
+	 *
+	 * Rows are processed as described in {@link #renderAll(Iterator, String...)}.
+	 *
+	 * @param rows       the rows of parameter values
+	 * @param handler    the callback that receives each rendered result, in the same order of the rows.
+	 * @param parameters the names of the parameters that receive the values of each row, in order.
+	 *
+	 * @throws IllegalArgumentException if a parameter name does not exist, or if a row has an unexpected number of values.
+	 */
+	public final void renderAll(Iterator<Object[]> rows, NotificationHandler<String> handler, String... parameters) throws IllegalArgumentException {
+		Args.notNull(handler, "Notification handler");
+		Iterator<String> results = renderAll(rows, parameters);
+		while (results.hasNext()) {
+			String result = results.next();
+			handler.notify(result, !results.hasNext());
+		}
+	}
+
+	/**
+	 * Renders this parameterized string once for each row of values provided by an {@link Iterator}, using the
+	 * threads of a given {@link ExecutorService}. Rows are split in batches that are rendered in parallel, and each
+	 * result is sent to a given {@link NotificationHandler} from the calling thread, in the same order of the rows.
+	 * The last result is sent with the {@code lastNotification} flag set to {@code true}.
+	 *
+	 * Rows are processed as described in {@link #renderAll(Iterator, String...)}. As rows are buffered before being
+	 * rendered, the arrays returned by the given iterator are copied and can be reused by it.
+	 *
+	 * If a batch fails to render, or the handler throws an exception, no more rows are read, batches still pending
+	 * are cancelled and the exception is rethrown.
+	 *
+	 * @param rows       the rows of parameter values
+	 * @param handler    the callback that receives each rendered result, in the same order of the rows.
+	 * @param executor   the executor used to render batches of rows in parallel.
+	 * @param parameters the names of the parameters that receive the values of each row, in order.
+	 *
+	 * @throws IllegalArgumentException if a parameter name does not exist, or if a row has an unexpected number of values.
+	 */
+	public final void renderAll(Iterator<Object[]> rows, NotificationHandler<String> handler, ExecutorService executor, String... parameters) throws IllegalArgumentException {
+		Args.notNull(rows, "Rows of parameter values");
+		Args.notNull(handler, "Notification handler");
+		Args.notNull(executor, "Executor");
+
+		final int[] slots = getSlots(parameters);
+		final ParameterizedString base = this.clone();
+		LinkedList<Future<String[]>> pending = new LinkedList<Future<String[]>>();
+		String previous = null;
+
+		try {
+			while (rows.hasNext() || !pending.isEmpty()) {
+				while (rows.hasNext() && pending.size() < MAX_PENDING_BATCHES) {
+					final List<Object[]> batch = new ArrayList<Object[]>(BATCH_SIZE);
+					while (rows.hasNext() && batch.size() < BATCH_SIZE) {
+						Object[] row = rows.next();
+						batch.add(row == null ? null : row.clone());
+					}
+					pending.add(executor.submit(new Callable<String[]>() {
+						@Override
+						public String[] call() {
+							String[] out = new String[batch.size()];
+							RowRenderer renderer = new RowRenderer(base, batch.iterator(), slots);
+							for (int i = 0; i < out.length; i++) {
+								out[i] = renderer.next();
+							}
+							return out;
+						}
+					}));
+				}
+
+				for (String result : getBatch(pending.removeFirst())) {
+					if (previous != null) {
+						handler.notify(previous, false);
+					}
+					previous = result;
+				}
+			}
+
+			if (previous != null) {
+				handler.notify(previous, true);
+			}
+		} finally {
+			//if rendering or the handler failed, batches still pending are no longer needed.
+			for (Future<String[]> batch : pending) {
+				batch.cancel(true);
+			}
+		}
+	}
+
+	private static String[] getBatch(Future<String[]> batch) {
+		try {
+			return batch.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Thread interrupted while rendering parameterized string", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException("Error rendering parameterized string", e.getCause());
+		}
+	}
+
+	private int[] getSlots(String... parameters) {
+		int[] slots;
+		if (parameters == null || parameters.length == 0) {
+			slots = new int[parameterValues.length];
+			for (int i = 0; i < slots.length; i++) {
+				slots[i] = i;
+			}
+		} else {
+			slots = new int[parameters.length];
+			for (int i = 0; i < slots.length; i++) {
+				slots[i] = slot(parameters[i]);
+			}
+		}
+		return slots;
+	}
+
+	private static final class RowRenderer implements Iterator<String> {
+		private final ParameterizedString binding;
+		private final Iterator<Object[]> rows;
+		private final int[] slots;
+
+		RowRenderer(ParameterizedString base, Iterator<Object[]> rows, int[] slots) {
+			this.binding = base.clone();
+			this.rows = rows;
+			this.slots = slots;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return rows.hasNext();
+		}
+
+		@Override
+		public String next() {
+			Object[] row = rows.next();
+			if (row == null || row.length != slots.length) {
+				throw new IllegalArgumentException("Expected " + slots.length + " values per row to render " + binding.template + ". Got " + (row == null ? null : Arrays.toString(row)));
+			}
+			for (int i = 0; i < slots.length; i++) {
+				binding.update(slots[i], row[i]);
+			}
+			return binding.applyParameterValues();
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
 	/**
 	 * Returns a set of all parameter names found in the input string given in the constructor of this class.
 	 *
 	 * @return the unmodifiable set of available parameter names.
 	 */
 	public final Set<String> getParameters() {
-		return Collections.unmodifiableSet(parameterNames);
+		return template.getParameters();
 	}
 
 	/**
 	 * Clears the values of all parameters.
 	 */
 	public final void clearValues() {
-		parameterValues.clear();
+		Arrays.fill(parameterValues, null);
+		consumedReaders = null;
+		firstChange = 0;
 		result = null;
 	}
 
@@ -167,7 +607,7 @@ public class ParameterizedString implements Cloneable {
 	 * @return {@code true} if the parameter name exists in this parameterized string, otherwise {@code false}
 	 */
 	public final boolean contains(String parameterName) {
-		return parameterNames.contains(parameterName);
+		return template.contains(parameterName);
 	}
 
 	/**
@@ -180,17 +620,28 @@ public class ParameterizedString implements Cloneable {
 	 * @throws IllegalArgumentException if the parameter name does not exist
 	 */
 	public final String getFormat(String parameterName) throws IllegalArgumentException {
-		validateParameterName(parameterName);
-		for (Parameter parameter : parameters) {
-			if (parameter.name.equals(parameterName)) {
-				return parameter.format;
-			}
-		}
-		return null;
+		return template.getFormat(parameterName);
 	}
 
 	/**
-	 * Clones this parameterzied string object. Currenty parameter values are copied as well.
+	 * Returns the encoding context associated with a given parameter, declared as the last step of its format,
+	 * e.g. <code>?q={query, query}</code>. Values of parameters with an encoding context are percent-encoded as they
+	 * are rendered.
+	 *
+	 * @param parameterName the name of the parameter
+	 *
+	 * @return the encoding context of the parameter, or {@code null} if none was declared.
+	 *
+	 * @throws IllegalArgumentException if the parameter name does not exist
+	 * @see ParameterEncoding
+	 */
+	public final ParameterEncoding getEncoding(String parameterName) throws IllegalArgumentException {
+		return template.getEncoding(parameterName);
+	}
+
+	/**
+	 * Clones this parameterzied string object. Currenty parameter values are copied as well, while the underlying
+	 * {@link ParameterizedTemplate} is shared.
 	 *
 	 * @return a clone of this object.
 	 */
@@ -198,7 +649,13 @@ public class ParameterizedString implements Cloneable {
 	public final ParameterizedString clone() {
 		try {
 			ParameterizedString clone = (ParameterizedString) super.clone();
-			clone.parameterValues = (TreeMap<String, Object>) this.parameterValues.clone();
+			clone.parameterValues = this.parameterValues.clone();
+			if (consumedReaders != null) {
+				clone.consumedReaders = consumedReaders.clone();
+			}
+			clone.buffer = null;
+			clone.offsets = null;
+			clone.firstChange = 0;
 			return clone;
 		} catch (CloneNotSupportedException e) {
 			throw new IllegalStateException("Could not clone parameterized string", e);
@@ -211,29 +668,12 @@ public class ParameterizedString implements Cloneable {
 	 * @return an unmodifiable copy of the map of parameter names and their values.
 	 */
 	public final Map<String, Object> getParameterValues() {
-		return Collections.unmodifiableMap(parameterValues);
-	}
-
-	static private final class Parameter {
-		final String name;
-		final int startPosition;
-		final int endPosition;
-		final String format;
-
-		Parameter(String name, int startPosition, int endPosition) {
-			name = name.trim();
-			if (name.contains(",")) {
-				this.name = name.substring(0, name.indexOf(","));
-				this.format = name.substring(name.indexOf(",") + 1).trim();
-				if (format.length() == 0) {
-					throw new IllegalArgumentException("Expected formatting parameter after ',' in '" + name + "'");
-				}
-			} else {
-				this.name = name;
-				format = null;
+		TreeMap<String, Object> out = new TreeMap<String, Object>();
+		for (int i = 0; i < parameterValues.length; i++) {
+			if (parameterValues[i] != null) {
+				out.put(template.getParameterName(i), parameterValues[i]);
 			}
-			this.startPosition = startPosition;
-			this.endPosition = endPosition;
 		}
+		return Collections.unmodifiableMap(out);
 	}
 }
@@ -0,0 +1,724 @@
+/*
+ * Copyright (c) 2013 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ */
+
+package com.univocity.api.common;
+
+import com.univocity.api.io.*;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * The immutable, parsed form of a {@code String} with parameters. A template is compiled once into a sequence of
+ * literal chunks interleaved with parameter slots, and can be shared by any number of threads. Parameter values are
+ * not stored here: they are provided by a {@link ParameterizedString} bound to this template (see {@link #bind()}), or
+ * given directly to {@link #render(Object[], Appendable)} as an array indexed by slot.
+ *
+ * Each distinct parameter name is associated with a slot index. Slot indexes follow the order of the names returned
+ * by {@link #getParameters()}.
+ *
+ * Parameter values are rendered with {@link String#valueOf(Object)}, except for values of type {@link Reader} and
+ * {@link ResourceProvider}: their content is piped into the output while rendering, so large values don't need to
+ * be loaded into memory. Readers obtained from a {@link ResourceProvider} are closed after being consumed, while
+ * plain {@link Reader} values are left open and can only be consumed once.
+ *
+ * A format can be associated with each parameter, after a comma: <code>{amount, number:#,##0.00}</code>. Formats are
+ * compiled along with the template and applied to values as they are rendered. Refer to {@link #getFormat(String)} for
+ * the supported formats.
+ *
+ * Values of parameters used to build URLs can be percent-encoded while rendering by declaring their encoding context
+ * as the last formatting step: <code>http://example.com/{folder, path}?q={query, query}</code>. See
+ * {@link ParameterEncoding}.
+ *
+ * Templates created with the extended syntax enabled (see {@link #ParameterizedTemplate(String, String, String, boolean)})
+ * support default values and escaping. Parameters can declare a default value after a colon, e.g.
+ * <code>{page:1}</code> or <code>{page:1, lpad:3:0}</code>. The default value is rendered as-is when no value is
+ * provided for the parameter. An open bracket preceded by a backslash is not treated as the start of a parameter:
+ * <code>\{name}</code> renders as <code>{name}</code>. Without the extended syntax, backslashes and colons have no
+ * special meaning, so the content between brackets (up to a comma) is the parameter name.
+ *
+ * Use {@link #compile(String, String, String)} to obtain templates from a global, bounded cache of parsed templates,
+ * so that applications that reuse the same few patterns over and over don't need to parse them again.
+ * {@link ParameterizedString} uses this cache when it is created from a {@code String}.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com</a>
+ * @see ParameterizedString
+ */
+public final class ParameterizedTemplate {
+
+	private final String string;
+	private final String openBracket;
+	private final String closeBracket;
+	private final boolean extendedSyntax;
+
+	private final String[] literals;
+	private final Parameter[] occurrences;
+	private final int[] firstOccurrences;
+	private final int[] lastOccurrences;
+	private final String[] slotNames;
+	private final Map<String, Integer> slotIndexes;
+	private final Set<String> parameterNames;
+
+	private static final char ESCAPE = '\\';
+
+	private static final AtomicLong cacheHits = new AtomicLong();
+	private static final AtomicLong cacheMisses = new AtomicLong();
+	private static int maximumCacheSize = 512;
+	private static int maximumCachedLength = 1024 * 1024;
+	private static long cachedLength;
+	private static final LinkedHashMap<List<String>, ParameterizedTemplate> cache = new LinkedHashMap<List<String>, ParameterizedTemplate>(64, 0.75f, true);
+
+	/**
+	 * Creates a new template with custom open and closing brackets
+	 *
+	 * @param string       the string with parameters
+	 * @param openBracket  the open bracket (before a parameter name)
+	 * @param closeBracket the close bracket (after a paramter name)
+	 */
+	public ParameterizedTemplate(String string, String openBracket, String closeBracket) {
+		this(string, openBracket, closeBracket, false);
+	}
+
+	/**
+	 * Creates a new template with custom open and closing brackets, optionally enabling the extended syntax for
+	 * default values (<code>{page:1}</code>) and escaped open brackets (<code>\{literal}</code>).
+	 *
+	 * @param string         the string with parameters
+	 * @param openBracket    the open bracket (before a parameter name)
+	 * @param closeBracket   the close bracket (after a paramter name)
+	 * @param extendedSyntax flag indicating whether default values and escaping are supported.
+	 */
+	public ParameterizedTemplate(String string, String openBracket, String closeBracket, boolean extendedSyntax) {
+		Args.notBlank(string, "Input string");
+		Args.notBlank(openBracket, "Open bracket");
+		Args.notBlank(closeBracket, "Close bracket");
+
+		this.openBracket = openBracket;
+		this.closeBracket = closeBracket;
+		this.extendedSyntax = extendedSyntax;
+		this.string = string;
+
+		List<Parameter> parameters = new ArrayList<Parameter>();
+		List<String> literals = new ArrayList<String>();
+		Set<String> names = new TreeSet<String>();
+		collectParameters(parameters, literals, names);
+
+		this.occurrences = parameters.toArray(new Parameter[0]);
+		this.literals = literals.toArray(new String[0]);
+
+		slotNames = names.toArray(new String[0]);
+		slotIndexes = new HashMap<String, Integer>(slotNames.length * 2);
+		for (int i = 0; i < slotNames.length; i++) {
+			slotIndexes.put(slotNames[i], i);
+		}
+		parameterNames = Collections.unmodifiableSet(names);
+
+		firstOccurrences = new int[slotNames.length];
+		lastOccurrences = new int[slotNames.length];
+		Arrays.fill(firstOccurrences, -1);
+
+		for (int i = 0; i < occurrences.length; i++) {
+			int slot = slotIndexes.get(occurrences[i].name);
+			occurrences[i].slot = slot;
+			if (firstOccurrences[slot] == -1) {
+				firstOccurrences[slot] = i;
+			}
+			lastOccurrences[slot] = i;
+		}
+	}
+
+	/**
+	 * Creates a new template with parameter names enclosed within { and }
+	 *
+	 * @param string the string with parameters
+	 */
+	public ParameterizedTemplate(String string) {
+		this(string, "{", "}");
+	}
+
+	/**
+	 * Returns a template with parameter names enclosed within { and }, reusing a previously parsed template from the
+	 * global template cache if available.
+	 *
+	 * @param string the string with parameters
+	 *
+	 * @return the parsed template.
+	 */
+	public static ParameterizedTemplate compile(String string) {
+		return compile(string, "{", "}");
+	}
+
+	/**
+	 * Returns a template with custom open and closing brackets, reusing a previously parsed template from the
+	 * global template cache if available. The cache keeps the most recently used templates, up to the limits defined
+	 * by {@link #setMaximumCacheSize(int)} and {@link #setMaximumCachedLength(int)}.
+	 *
+	 * @param string       the string with parameters
+	 * @param openBracket  the open bracket (before a parameter name)
+	 * @param closeBracket the close bracket (after a paramter name)
+	 *
+	 * @return the parsed template.
+	 */
+	public static ParameterizedTemplate compile(String string, String openBracket, String closeBracket) {
+		return compile(string, openBracket, closeBracket, false);
+	}
+
+	/**
+	 * Returns a template with custom open and closing brackets, optionally with the extended syntax for default
+	 * values and escaping enabled, reusing a previously parsed template from the global template cache if available.
+	 *
+	 * @param string         the string with parameters
+	 * @param openBracket    the open bracket (before a parameter name)
+	 * @param closeBracket   the close bracket (after a paramter name)
+	 * @param extendedSyntax flag indicating whether default values and escaping are supported.
+	 *
+	 * @return the parsed template.
+	 *
+	 * @see #ParameterizedTemplate(String, String, String, boolean)
+	 */
+	public static ParameterizedTemplate compile(String string, String openBracket, String closeBracket, boolean extendedSyntax) {
+		List<String> key = Arrays.asList(string, openBracket, closeBracket, String.valueOf(extendedSyntax));
+		ParameterizedTemplate template;
+		synchronized (cache) {
+			template = cache.get(key);
+		}
+		if (template != null) {
+			cacheHits.incrementAndGet();
+			return template;
+		}
+
+		cacheMisses.incrementAndGet();
+		template = new ParameterizedTemplate(string, openBracket, closeBracket, extendedSyntax);
+		synchronized (cache) {
+			if (maximumCacheSize > 0 && string.length() <= maximumCachedLength) {
+				ParameterizedTemplate previous = cache.put(key, template);
+				if (previous != null) {
+					cachedLength -= previous.string.length();
+				}
+				cachedLength += string.length();
+				evict();
+			}
+		}
+		return template;
+	}
+
+	/**
+	 * Discards the least recently used templates until the cache is within both its size and length limits.
+	 * Must be called while holding the lock of the cache.
+	 */
+	private static void evict() {
+		Iterator<ParameterizedTemplate> it = cache.values().iterator();
+		while ((cache.size() > maximumCacheSize || cachedLength > maximumCachedLength) && it.hasNext()) {
+			cachedLength -= it.next().string.length();
+			it.remove();
+		}
+	}
+
+	/**
+	 * Defines the maximum number of parsed templates kept in the global template cache used by
+	 * {@link #compile(String, String, String)}. The least recently used templates are discarded when the cache is full.
+	 * <i>Defaults to 512</i>
+	 *
+	 * @param maximumCacheSize the maximum number of templates to keep. Use 0 to disable caching.
+	 */
+	public static void setMaximumCacheSize(int maximumCacheSize) {
+		Args.positiveOrZero(maximumCacheSize, "Maximum template cache size");
+		synchronized (cache) {
+			ParameterizedTemplate.maximumCacheSize = maximumCacheSize;
+			evict();
+		}
+	}
+
+	/**
+	 * Defines the maximum total length, in characters, of the strings of all templates kept in the global template
+	 * cache used by {@link #compile(String, String, String)}. The least recently used templates are discarded when
+	 * this limit is exceeded, and templates longer than the limit are never cached, so that a few large templates
+	 * can't hold on to large amounts of memory. <i>Defaults to 1,048,576 characters</i>
+	 *
+	 * @param maximumCachedLength the maximum total length of cached templates. Use 0 to disable caching.
+	 */
+	public static void setMaximumCachedLength(int maximumCachedLength) {
+		Args.positiveOrZero(maximumCachedLength, "Maximum length of cached templates");
+		synchronized (cache) {
+			ParameterizedTemplate.maximumCachedLength = maximumCachedLength;
+			evict();
+		}
+	}
+
+	/**
+	 * Returns the maximum total length, in characters, of the strings of all templates kept in the global template
+	 * cache.
+	 *
+	 * @return the maximum total length of cached templates.
+	 */
+	public static int getMaximumCachedLength() {
+		synchronized (cache) {
+			return maximumCachedLength;
+		}
+	}
+
+	/**
+	 * Returns the total length, in characters, of the strings of all templates currently kept in the global
+	 * template cache.
+	 *
+	 * @return the total length of cached templates.
+	 */
+	public static long getCachedLength() {
+		synchronized (cache) {
+			return cachedLength;
+		}
+	}
+
+	/**
+	 * Returns the maximum number of parsed templates kept in the global template cache.
+	 *
+	 * @return the maximum cache size.
+	 */
+	public static int getMaximumCacheSize() {
+		synchronized (cache) {
+			return maximumCacheSize;
+		}
+	}
+
+	/**
+	 * Returns the number of parsed templates currently kept in the global template cache.
+	 *
+	 * @return the current cache size.
+	 */
+	public static int getCacheSize() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	/**
+	 * Returns the number of calls to {@link #compile(String, String, String)} that found a parsed template in the
+	 * global template cache.
+	 *
+	 * @return the number of cache hits.
+	 */
+	public static long getCacheHits() {
+		return cacheHits.get();
+	}
+
+	/**
+	 * Returns the number of calls to {@link #compile(String, String, String)} that had to parse a new template.
+	 *
+	 * @return the number of cache misses.
+	 */
+	public static long getCacheMisses() {
+		return cacheMisses.get();
+	}
+
+	/**
+	 * Discards all templates of the global template cache and resets its hit and miss counters.
+	 */
+	public static void clearCache() {
+		synchronized (cache) {
+			cache.clear();
+			cachedLength = 0;
+			cacheHits.set(0);
+			cacheMisses.set(0);
+		}
+	}
+
+	private void collectParameters(List<Parameter> parameters, List<String> literals, Set<String> names) {
+		String literal = "";
+		for (TemplateTokenizer.Token token : tokenizer().tokenize(string)) {
+			if (token.isPlaceholder()) {
+				Parameter parameter = new Parameter(token.getContent(), token.getStart(), token.getEnd(), extendedSyntax);
+				parameters.add(parameter);
+				names.add(parameter.name);
+				literals.add(literal);
+				literal = "";
+			} else {
+				literal = token.getContent();
+			}
+		}
+		literals.add(literal);
+	}
+
+	private TemplateTokenizer tokenizer() {
+		if (extendedSyntax) {
+			return new TemplateTokenizer(openBracket, closeBracket, ESCAPE, true);
+		}
+		return new TemplateTokenizer(openBracket, closeBracket, TemplateTokenizer.NO_ESCAPE, false);
+	}
+
+	/**
+	 * Creates a new {@link ParameterizedString} bound to this template, with no parameter values set.
+	 * The parsed structure of this template is shared, not copied.
+	 *
+	 * @return a new parameterized string that uses this template.
+	 */
+	public ParameterizedString bind() {
+		return new ParameterizedString(this);
+	}
+
+	/**
+	 * Returns the index of the slot associated with a given parameter.
+	 *
+	 * @param parameter the parameter name
+	 *
+	 * @return the index of the slot associated with the given parameter
+	 *
+	 * @throws IllegalArgumentException if the parameter name does not exist
+	 */
+	public int slot(String parameter) throws IllegalArgumentException {
+		Args.notBlank(parameter, "Parameter name");
+		Integer slot = slotIndexes.get(parameter);
+		if (slot == null) {
+			throw new IllegalArgumentException("Parameter '" + parameter + "' not found in " + string + ". Available parameters: " + parameterNames);
+		}
+		return slot;
+	}
+
+	/**
+	 * Returns the number of distinct parameters, i.e. the number of slots available in this template.
+	 *
+	 * @return the number of slots of this template
+	 */
+	public int slotCount() {
+		return slotNames.length;
+	}
+
+	/**
+	 * Returns the name of the parameter associated with a given slot.
+	 *
+	 * @param slot the index of the parameter slot
+	 *
+	 * @return the parameter name
+	 *
+	 * @throws IndexOutOfBoundsException if the slot index is invalid
+	 */
+	public String getParameterName(int slot) throws IndexOutOfBoundsException {
+		return slotNames[slot];
+	}
+
+	/**
+	 * Returns a set of all parameter names found in the input string given in the constructor of this class.
+	 *
+	 * @return the unmodifiable set of available parameter names.
+	 */
+	public Set<String> getParameters() {
+		return parameterNames;
+	}
+
+	/**
+	 * Tests whether a given parameter name exists in this template.
+	 *
+	 * @param parameterName the name of the parameter
+	 *
+	 * @return {@code true} if the parameter name exists in this template, otherwise {@code false}
+	 */
+	public boolean contains(String parameterName) {
+		return slotIndexes.containsKey(parameterName);
+	}
+
+	/**
+	 * Returns the format associated with a given parameter. Formats are declared after a comma,
+	 * e.g. <code>{amount, number:#,##0.00}</code>, and can have multiple steps separated by {@code |}, which are
+	 * applied in sequence to the value of the parameter while rendering. Supported steps are:
+	 *
+	 * <ul>
+	 * <li><code>number:pattern</code> formats numbers using a {@link java.text.DecimalFormat} pattern</li>
+	 * <li><code>date:pattern</code> formats dates and calendars using a {@link java.text.SimpleDateFormat} pattern</li>
+	 * <li><code>lpad:length[:char]</code> pads the value on the left up to a given length (with spaces by default)</li>
+	 * <li><code>rpad:length[:char]</code> pads the value on the right up to a given length (with spaces by default)</li>
+	 * <li><code>url</code> URL-encodes the value using UTF-8</li>
+	 * <li><code>path</code>, <code>query</code> or <code>raw</code>, as the last step, declares the encoding context of
+	 * the parameter. See {@link #getEncoding(String)}</li>
+	 * </ul>
+	 *
+	 * Any other format is applied as a {@link java.text.DecimalFormat} pattern to numbers, or as a
+	 * {@link java.text.SimpleDateFormat} pattern to dates. Formats are not applied to {@link Reader} and
+	 * {@link ResourceProvider} values.
+	 *
+	 * @param parameterName the name of the parameter
+	 *
+	 * @return the format of parameter as {@code String}. Returns {@code null} if the format was not set.
+	 *
+	 * @throws IllegalArgumentException if the parameter name does not exist
+	 */
+	public String getFormat(String parameterName) throws IllegalArgumentException {
+		int slot = slot(parameterName);
+		for (Parameter parameter : occurrences) {
+			if (parameter.slot == slot) {
+				return parameter.format;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the encoding context associated with a given parameter. The encoding context is declared as the last
+	 * step of the format of the parameter, e.g. <code>?q={query, query}</code> or <code>/{id, lpad:6:0|path}</code>,
+	 * and makes values of the parameter be percent-encoded as they are rendered. Refer to {@link ParameterEncoding}
+	 * for the available encoding contexts.
+	 *
+	 * @param parameterName the name of the parameter
+	 *
+	 * @return the encoding context of the parameter, or {@code null} if none was declared.
+	 *
+	 * @throws IllegalArgumentException if the parameter name does not exist
+	 */
+	public ParameterEncoding getEncoding(String parameterName) throws IllegalArgumentException {
+		int slot = slot(parameterName);
+		for (Parameter parameter : occurrences) {
+			if (parameter.slot == slot) {
+				return parameter.encoding;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the open bracket that precedes each parameter name.
+	 *
+	 * @return the open bracket
+	 */
+	public String getOpenBracket() {
+		return openBracket;
+	}
+
+	/**
+	 * Returns the close bracket that follows each parameter name.
+	 *
+	 * @return the close bracket
+	 */
+	public String getCloseBracket() {
+		return closeBracket;
+	}
+
+	/**
+	 * Indicates whether this template supports default values and escaping.
+	 *
+	 * @return {@code true} if the extended syntax is enabled, otherwise {@code false}
+	 */
+	public boolean isExtendedSyntax() {
+		return extendedSyntax;
+	}
+
+	/**
+	 * Returns the original {@code String} provided in the constructor of this class, no parameters are replaced
+	 *
+	 * @return the {@code String} with parameters
+	 */
+	@Override
+	public String toString() {
+		return string;
+	}
+
+	/**
+	 * Renders this template with the given parameter values and returns the resulting {@code String}.
+	 * Parameters without values will not be replaced.
+	 *
+	 * This method does not modify any state and can be invoked concurrently.
+	 *
+	 * @param values the parameter values, indexed by slot.
+	 *
+	 * @return the resulting {@code String} with all parameters replaced by their values.
+	 */
+	public String render(Object[] values) {
+		StringBuilder out = new StringBuilder(string.length() + (occurrences.length << 4));
+		try {
+			render(values, out);
+		} catch (IOException e) {
+			//never happens with a StringBuilder
+			throw new IllegalStateException(e);
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Renders this template with the given parameter values, appending the result to a given {@link Appendable}.
+	 * Parameters without values will not be replaced.
+	 *
+	 * This method does not modify any state and can be invoked concurrently.
+	 *
+	 * @param values the parameter values, indexed by slot.
+	 * @param out    the target that will receive the literal content and parameter values.
+	 *
+	 * @throws IOException if the given {@link Appendable} fails to accept the content.
+	 */
+	public void render(Object[] values, Appendable out) throws IOException {
+		for (int i = 0; i < occurrences.length; i++) {
+			out.append(literals[i]);
+			appendOccurrence(i, values, out);
+		}
+		out.append(literals[occurrences.length]);
+	}
+
+	/**
+	 * Renders the segments of this template from a given parameter occurrence onwards, recording in {@code offsets}
+	 * the length of the output before each literal chunk is appended. The content produced before
+	 * {@code offsets[from]} is assumed to be unchanged and is reused.
+	 *
+	 * @param values  the parameter values, indexed by slot.
+	 * @param out     the output, already truncated to {@code offsets[from]}
+	 * @param from    index of the first parameter occurrence that must be rendered again.
+	 * @param offsets the offsets of each literal chunk in the output, with {@link #occurrenceCount()} + 1 elements.
+	 */
+	void render(Object[] values, StringBuilder out, int from, int[] offsets) throws IOException {
+		for (int i = from; i < occurrences.length; i++) {
+			offsets[i] = out.length();
+			out.append(literals[i]);
+			appendOccurrence(i, values, out);
+		}
+		offsets[occurrences.length] = out.length();
+		out.append(literals[occurrences.length]);
+	}
+
+	/**
+	 * Returns the number of parameter occurrences in this template. A parameter used twice counts as two occurrences
+	 * but only has one slot.
+	 *
+	 * @return the number of parameter occurrences
+	 */
+	int occurrenceCount() {
+		return occurrences.length;
+	}
+
+	/**
+	 * Returns the index of the first occurrence of the parameter associated with a given slot.
+	 *
+	 * @param slot the index of the parameter slot
+	 *
+	 * @return the index of the first occurrence of the slot's parameter in this template.
+	 */
+	int firstOccurrence(int slot) {
+		return firstOccurrences[slot];
+	}
+
+	/**
+	 * Returns the index of the last occurrence of the parameter associated with a given slot.
+	 *
+	 * @param slot the index of the parameter slot
+	 *
+	 * @return the index of the last occurrence of the slot's parameter in this template.
+	 */
+	int lastOccurrence(int slot) {
+		return lastOccurrences[slot];
+	}
+
+	private void appendOccurrence(int occurrence, Object[] values, Appendable out) throws IOException {
+		Parameter parameter = occurrences[occurrence];
+		Object parameterValue = values[parameter.slot];
+		if (parameterValue == null) {
+			if (parameter.defaultValue == null) {
+				out.append(string, parameter.startPosition, parameter.endPosition);
+				return;
+			}
+			parameterValue = parameter.defaultValue;
+		}
+		if (parameter.formatter != null && !(parameterValue instanceof Reader || parameterValue instanceof ResourceProvider)) {
+			parameterValue = parameter.formatter.apply(parameterValue);
+		}
+		if (parameter.encoding == null || parameter.encoding == ParameterEncoding.RAW) {
+			appendValue(parameterValue, out);
+		} else if (parameterValue instanceof CharSequence) {
+			parameter.encoding.encode((CharSequence) parameterValue, out);
+		} else if (parameterValue instanceof Reader || parameterValue instanceof ResourceProvider) {
+			StringBuilder content = new StringBuilder();
+			appendValue(parameterValue, content);
+			parameter.encoding.encode(content, out);
+		} else {
+			parameter.encoding.encode(String.valueOf(parameterValue), out);
+		}
+	}
+
+	private static void appendValue(Object value, Appendable out) throws IOException {
+		if (value instanceof ResourceProvider) {
+			value = ((ResourceProvider<?>) value).getResource();
+			if (value instanceof Reader) {
+				Reader reader = (Reader) value;
+				try {
+					pipe(reader, out);
+				} finally {
+					reader.close();
+				}
+				return;
+			}
+		} else if (value instanceof Reader) {
+			pipe((Reader) value, out);
+			return;
+		}
+		out.append(String.valueOf(value));
+	}
+
+	private static void pipe(Reader in, Appendable out) throws IOException {
+		char[] buffer = new char[4096];
+		int length;
+		if (out instanceof Writer) {
+			Writer writer = (Writer) out;
+			while ((length = in.read(buffer)) != -1) {
+				writer.write(buffer, 0, length);
+			}
+		} else if (out instanceof StringBuilder) {
+			StringBuilder builder = (StringBuilder) out;
+			while ((length = in.read(buffer)) != -1) {
+				builder.append(buffer, 0, length);
+			}
+		} else {
+			while ((length = in.read(buffer)) != -1) {
+				out.append(CharBuffer.wrap(buffer, 0, length));
+			}
+		}
+	}
+
+	static private final class Parameter {
+		final String name;
+		final int startPosition;
+		final int endPosition;
+		final String format;
+		final ParameterFormat formatter;
+		final ParameterEncoding encoding;
+		final String defaultValue;
+		int slot;
+
+		Parameter(String content, int startPosition, int endPosition, boolean extendedSyntax) {
+			int nameEnd = content.length();
+			int comma = content.indexOf(',');
+			int colon = extendedSyntax ? content.indexOf(':') : -1;
+
+			if (colon != -1 && (comma == -1 || colon < comma)) {
+				nameEnd = colon;
+				comma = content.indexOf(',', colon);
+				this.defaultValue = content.substring(colon + 1, comma == -1 ? content.length() : comma);
+			} else {
+				this.defaultValue = null;
+				if (comma != -1) {
+					nameEnd = comma;
+				}
+			}
+			this.name = content.substring(0, nameEnd).trim();
+
+			if (comma != -1) {
+				this.format = content.substring(comma + 1).trim();
+				if (format.length() == 0) {
+					throw new IllegalArgumentException("Expected formatting parameter after ',' in '" + content.trim() + "'");
+				}
+				int lastStep = format.lastIndexOf('|');
+				this.encoding = ParameterEncoding.fromName(format.substring(lastStep + 1).trim());
+				if (encoding == null) {
+					this.formatter = ParameterFormat.compile(format);
+				} else if (lastStep == -1) {
+					this.formatter = null;
+				} else {
+					this.formatter = ParameterFormat.compile(format.substring(0, lastStep));
+				}
+			} else {
+				this.format = null;
+				this.formatter = null;
+				this.encoding = null;
+			}
+			this.startPosition = startPosition;
+			this.endPosition = endPosition;
+		}
+	}
+}
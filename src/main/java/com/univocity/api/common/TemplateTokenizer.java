@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2013 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ */
+
+package com.univocity.api.common;
+
+import java.util.*;
+
+/**
+ * Breaks down a {@code String} with placeholders enclosed within open and close brackets (such as
+ * <code>{name}</code>) into a sequence of literal and placeholder {@link Token}s, in a single pass over the input.
+ *
+ * <ul>
+ * <li>If an escape character is defined, an open bracket preceded by it is treated as literal content and the escape
+ * character is discarded, e.g. <code>\{name}</code> produces the literal <code>{name}</code></li>
+ * <li>Placeholders can declare a default value after a colon, e.g. <code>{name:default}</code>. The default value can
+ * itself contain placeholders, such as <code>{app.dir:{user.home}/app}</code>, unless nested defaults are disabled.
+ * Interpreting the content of a placeholder is up to the caller.</li>
+ * <li>Open brackets without a matching close bracket are treated as literal content.</li>
+ * </ul>
+ *
+ * Instances of this class hold no state other than their configuration and can be shared among threads.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com</a>
+ * @see ParameterizedTemplate
+ * @see Args#replaceSystemProperties(String)
+ */
+public final class TemplateTokenizer {
+
+	/**
+	 * Value of the escape character that disables escaping.
+	 */
+	public static final char NO_ESCAPE = '\0';
+
+	private final String openBracket;
+	private final String closeBracket;
+	private final char escape;
+	private final boolean nestedDefaults;
+
+	/**
+	 * Creates a tokenizer for placeholders enclosed within the given brackets. Default values of placeholders can
+	 * contain nested placeholders.
+	 *
+	 * @param openBracket  the open bracket (before a placeholder)
+	 * @param closeBracket the close bracket (after a placeholder)
+	 * @param escape       the character that, when placed right before an open bracket, prevents it from starting a
+	 *                     placeholder. Use {@link #NO_ESCAPE} to disable escaping.
+	 */
+	public TemplateTokenizer(String openBracket, String closeBracket, char escape) {
+		this(openBracket, closeBracket, escape, true);
+	}
+
+	/**
+	 * Creates a tokenizer for placeholders enclosed within the given brackets.
+	 *
+	 * @param openBracket    the open bracket (before a placeholder)
+	 * @param closeBracket   the close bracket (after a placeholder)
+	 * @param escape         the character that, when placed right before an open bracket, prevents it from starting a
+	 *                       placeholder. Use {@link #NO_ESCAPE} to disable escaping.
+	 * @param nestedDefaults flag indicating whether placeholders found after a colon are nested in the enclosing
+	 *                       placeholder (as in <code>{app.dir:{user.home}/app}</code>). If {@code false}, every
+	 *                       placeholder ends at the first close bracket after its open bracket.
+	 */
+	public TemplateTokenizer(String openBracket, String closeBracket, char escape, boolean nestedDefaults) {
+		Args.notEmpty(openBracket, "Open bracket");
+		Args.notEmpty(closeBracket, "Close bracket");
+		this.openBracket = openBracket;
+		this.closeBracket = closeBracket;
+		this.escape = escape;
+		this.nestedDefaults = nestedDefaults;
+	}
+
+	/**
+	 * Breaks down the given input into a sequence of literal and placeholder tokens. Consecutive literal content is
+	 * always returned in a single token, so literal and placeholder tokens never appear twice in a row.
+	 *
+	 * @param input the input to tokenize.
+	 *
+	 * @return the list of tokens found in the input.
+	 */
+	public List<Token> tokenize(String input) {
+		List<Token> tokens = new ArrayList<Token>();
+		StringBuilder literal = null;
+		int literalStart = 0;
+		int from = 0;
+		int length = input.length();
+
+		while (from < length) {
+			int open = input.indexOf(openBracket, from);
+			if (open < 0) {
+				break;
+			}
+
+			if (escape != NO_ESCAPE && open > literalStart && input.charAt(open - 1) == escape) {
+				if (literal == null) {
+					literal = new StringBuilder(length);
+				}
+				literal.append(input, literalStart, open - 1).append(openBracket);
+				from = literalStart = open + openBracket.length();
+				continue;
+			}
+
+			int contentStart = open + openBracket.length();
+			int close = findClose(input, contentStart);
+			if (close < 0) {
+				break;
+			}
+
+			if (literal != null) {
+				literal.append(input, literalStart, open);
+				tokens.add(new Token(input, literalStart, open, literal.toString(), false));
+				literal = null;
+			} else if (open > literalStart) {
+				tokens.add(new Token(input, literalStart, open, input.substring(literalStart, open), false));
+			}
+
+			int end = close + closeBracket.length();
+			tokens.add(new Token(input, open, end, input.substring(contentStart, close), true));
+			from = literalStart = end;
+		}
+
+		if (literal != null) {
+			literal.append(input, literalStart, length);
+			tokens.add(new Token(input, literalStart, length, literal.toString(), false));
+		} else if (length > literalStart) {
+			tokens.add(new Token(input, literalStart, length, input.substring(literalStart, length), false));
+		}
+		return tokens;
+	}
+
+	/**
+	 * Finds the close bracket of a placeholder. Open brackets found after a colon (i.e. in a default value) increase
+	 * the nesting level, so that nested placeholders are kept as part of the default value. If nesting is unbalanced,
+	 * the first close bracket is used.
+	 */
+	private int findClose(String input, int from) {
+		if (!nestedDefaults) {
+			return input.indexOf(closeBracket, from);
+		}
+		int depth = 0;
+		boolean inDefault = false;
+		for (int i = from; i < input.length(); i++) {
+			if (input.startsWith(closeBracket, i)) {
+				if (depth == 0) {
+					return i;
+				}
+				depth--;
+				i += closeBracket.length() - 1;
+			} else if (inDefault && input.startsWith(openBracket, i)) {
+				depth++;
+				i += openBracket.length() - 1;
+			} else if (input.charAt(i) == ':') {
+				inDefault = true;
+			}
+		}
+		return inDefault ? input.indexOf(closeBracket, from) : -1;
+	}
+
+	/**
+	 * A fragment of an input processed by a {@link TemplateTokenizer}: either literal content or a placeholder.
+	 */
+	public static final class Token {
+		private final String input;
+		private final int start;
+		private final int end;
+		private final String text;
+		private final boolean placeholder;
+
+		private Token(String input, int start, int end, String text, boolean placeholder) {
+			this.input = input;
+			this.start = start;
+			this.end = end;
+			this.text = text;
+			this.placeholder = placeholder;
+		}
+
+		/**
+		 * Indicates whether this token is a placeholder.
+		 *
+		 * @return {@code true} if this token is a placeholder, or {@code false} if it is literal content.
+		 */
+		public boolean isPlaceholder() {
+			return placeholder;
+		}
+
+		/**
+		 * Returns the content of this token. For literal tokens, this is the literal text with escape characters
+		 * removed. For placeholders, this is the text between the open and close brackets.
+		 *
+		 * @return the content of this token
+		 */
+		public String getContent() {
+			return text;
+		}
+
+		/**
+		 * Returns the original text of this token, as it appears in the input (including brackets and escape
+		 * characters).
+		 *
+		 * @return the original text of this token.
+		 */
+		public String getOriginalText() {
+			return input.substring(start, end);
+		}
+
+		/**
+		 * Returns the position of the first character of this token in the input.
+		 *
+		 * @return the start position of this token
+		 */
+		public int getStart() {
+			return start;
+		}
+
+		/**
+		 * Returns the position after the last character of this token in the input.
+		 *
+		 * @return the end position of this token
+		 */
+		public int getEnd() {
+			return end;
+		}
+
+		@Override
+		public String toString() {
+			return getOriginalText();
+		}
+	}
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2013 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ */
+
+package com.univocity.api.config;
+
+import java.util.*;
+
+/**
+ * A listener of changes in the properties of a {@link ReloadableConfiguration}. Listeners are registered for a
+ * given prefix of property names, and are only notified when properties that start with the prefix are added,
+ * removed or modified.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com</a>
+ * @see ReloadableConfiguration#addListener(String, ConfigurationChangeListener)
+ */
+public interface ConfigurationChangeListener {
+
+	/**
+	 * Notifies that properties of interest have been changed after the configuration was reloaded.
+	 *
+	 * @param configuration     the new configuration, already in use.
+	 * @param changedProperties the names of the properties that were added, removed or modified, filtered by the
+	 *                          prefix used to register this listener.
+	 */
+	void configurationChanged(PropertyBasedConfiguration configuration, Set<String> changedProperties);
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2013 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ */
+
+package com.univocity.api.config;
+
+import com.univocity.api.common.*;
+import com.univocity.api.exception.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.Map.*;
+import java.util.zip.*;
+
+/**
+ * Compiles a {@link PropertyBasedConfiguration} into a compact binary snapshot, which can be loaded much faster than
+ * the original properties file: the snapshot is read (or memory-mapped, if large) with a single operation, and
+ * contains the values of all properties already resolved, so no parsing or variable substitution is required.
+ *
+ * A snapshot records the length and checksum of the properties file it was compiled from, the default charset used
+ * to decode it, as well as the values of the system properties used to resolve variables (such as
+ * {@code user.home}). {@link #load(File, File)} only uses a snapshot if these still match, and otherwise loads the
+ * properties file and compiles a new snapshot. Snapshots are also protected by a checksum of their own contents, so
+ * a corrupted or truncated snapshot is never used.
+ *
+ * Snapshots can be compiled at build time with {@link #main(String...)}, e.g.
+ * {@code java com.univocity.api.config.ConfigurationSnapshot config/app.properties config/app.snapshot}
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com</a>
+ * @see PropertyBasedConfiguration
+ */
+public final class ConfigurationSnapshot {
+
+	private static final int MAGIC = 0x55564353; // "UVCS"
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private ConfigurationSnapshot() {
+
+	}
+
+	/**
+	 * Loads a configuration from a snapshot, if it is up to date with the given properties file. Otherwise, the
+	 * properties file is loaded and a new snapshot is compiled from it. Failure to write the new snapshot (e.g. if
+	 * its directory is read-only) is ignored.
+	 *
+	 * If the properties file doesn't exist, the snapshot is used as long as it is valid and the system properties
+	 * it depends on didn't change.
+	 *
+	 * @param source   the properties file the snapshot is compiled from, encoded with the default charset.
+	 * @param snapshot the snapshot file
+	 *
+	 * @return the configuration loaded from the snapshot, or from the properties file if the snapshot is stale.
+	 *
+	 * @throws IllegalConfigurationException if neither the snapshot nor the properties file can be loaded.
+	 */
+	public static PropertyBasedConfiguration load(File source, File snapshot) throws IllegalConfigurationException {
+		Args.notNull(source, "Properties file");
+		Args.notNull(snapshot, "Snapshot file");
+
+		PropertyBasedConfiguration configuration = read(source, snapshot);
+		if (configuration == null) {
+			configuration = new PropertyBasedConfiguration(source);
+			try {
+				write(configuration, source, snapshot);
+			} catch (IllegalConfigurationException e) {
+				//ignore: the configuration is usable regardless of the snapshot.
+			}
+		}
+		return configuration;
+	}
+
+	/**
+	 * Loads a properties file, and compiles it into a snapshot.
+	 *
+	 * @param source   the properties file, encoded with the default charset.
+	 * @param snapshot the snapshot file to create. Any existing file is replaced.
+	 *
+	 * @throws IllegalConfigurationException if the properties file can't be loaded or the snapshot can't be written.
+	 */
+	public static void compile(File source, File snapshot) throws IllegalConfigurationException {
+		write(new PropertyBasedConfiguration(source), source, snapshot);
+	}
+
+	/**
+	 * Compiles a configuration into a snapshot. Only configurations loaded from a single properties file, encoded
+	 * with the default charset, can be compiled. Scoped views (see {@link PropertyBasedConfiguration#scope(String)})
+	 * and configurations composed from multiple layers are rejected, as a snapshot only tracks one source file.
+	 *
+	 * @param configuration the configuration to compile.
+	 * @param source        the properties file the configuration was loaded from. Its length and checksum are
+	 *                      stored in the snapshot to detect when the snapshot becomes stale.
+	 * @param snapshot      the snapshot file to create. Any existing file is replaced.
+	 *
+	 * @throws IllegalArgumentException      if the configuration is a scoped view or has multiple layers.
+	 * @throws IllegalConfigurationException if the snapshot can't be written.
+	 */
+	public static void write(PropertyBasedConfiguration configuration, File source, File snapshot) throws IllegalConfigurationException {
+		Args.notNull(configuration, "Configuration");
+		Args.notNull(source, "Properties file");
+		Args.notNull(snapshot, "Snapshot file");
+		if (configuration.getScope().length() > 0) {
+			throw new IllegalArgumentException("Cannot compile a snapshot of configuration scope '" + configuration.getScope() + "'");
+		}
+		if (configuration.getLayerCount() != 1) {
+			throw new IllegalArgumentException("Cannot compile a snapshot of a configuration with " + configuration.getLayerCount() + " layers");
+		}
+
+		try {
+			ByteBuffer sourceContent = PropertiesFileLoader.read(source);
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(sourceContent.limit() + HEADER_SIZE);
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(sourceContent.limit());
+			out.writeLong(PropertiesFileLoader.checksum(sourceContent));
+			writeString(out, Charset.defaultCharset().name());
+
+			//values must be resolved first: in lazy mode, resolution records the system properties used.
+			Map<String, String> values = configuration.getValues();
+			writeEntries(out, configuration.getSystemProperties());
+			writeEntries(out, values);
+			out.flush();
+
+			CRC32 crc = new CRC32();
+			crc.update(bytes.toByteArray(), 0, bytes.size());
+			out.writeLong(crc.getValue());
+			out.flush();
+
+			File tmp = new File(snapshot.getAbsoluteFile().getParentFile(), snapshot.getName() + ".tmp");
+			FileOutputStream output = new FileOutputStream(tmp);
+			try {
+				bytes.writeTo(output);
+			} finally {
+				output.close();
+			}
+			if (!tmp.renameTo(snapshot)) {
+				snapshot.delete();
+				if (!tmp.renameTo(snapshot)) {
+					tmp.delete();
+					throw new IOException("Unable to replace " + snapshot.getAbsolutePath());
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalConfigurationException("Error writing configuration snapshot " + snapshot.getAbsolutePath(), e);
+		}
+	}
+
+	private static void writeEntries(DataOutputStream out, Map<String, String> entries) throws IOException {
+		out.writeInt(entries.size());
+		for (Entry<String, String> e : entries.entrySet()) {
+			writeString(out, e.getKey());
+			writeString(out, e.getValue());
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		if (s == null) {
+			out.writeInt(-1);
+		} else {
+			byte[] bytes = s.getBytes(UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Reads a configuration from a snapshot, if it exists and is up to date.
+	 *
+	 * @return the configuration, or {@code null} if the snapshot is missing, stale or invalid.
+	 */
+	private static PropertyBasedConfiguration read(File source, File snapshot) {
+		if (!snapshot.isFile()) {
+			return null;
+		}
+		try {
+			ByteBuffer buffer = PropertiesFileLoader.read(snapshot);
+			int payloadEnd = buffer.limit() - 8;
+			if (payloadEnd < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+				return null;
+			}
+			buffer.limit(payloadEnd);
+			long checksum = PropertiesFileLoader.checksum(buffer);
+			buffer.limit(payloadEnd + 8);
+			if (buffer.getLong(payloadEnd) != checksum) {
+				return null;
+			}
+
+			buffer.position(8);
+			long sourceLength = buffer.getLong();
+			long sourceChecksum = buffer.getLong();
+			byte[] tmp = new byte[256];
+			if (!Charset.defaultCharset().name().equals(readString(buffer, tmp))) {
+				return null;
+			}
+			if (source.exists()) {
+				if (source.length() != sourceLength) {
+					return null;
+				}
+				ByteBuffer sourceContent = PropertiesFileLoader.read(source);
+				if (sourceContent.limit() != sourceLength || PropertiesFileLoader.checksum(sourceContent) != sourceChecksum) {
+					return null;
+				}
+			}
+
+			Map<String, String> systemProperties = readEntries(buffer, tmp);
+			for (Entry<String, String> e : systemProperties.entrySet()) {
+				String current = System.getProperty(e.getKey());
+				if (current == null ? e.getValue() != null : !current.equals(e.getValue())) {
+					return null;
+				}
+			}
+			Map<String, String> values = readEntries(buffer, tmp);
+			if (buffer.position() != payloadEnd) {
+				return null;
+			}
+			return new PropertyBasedConfiguration(values, systemProperties);
+		} catch (IOException e) {
+			return null;
+		} catch (RuntimeException e) {
+			//corrupted snapshot that passed the checksum: reload from the properties file.
+			return null;
+		}
+	}
+
+	private static Map<String, String> readEntries(ByteBuffer buffer, byte[] tmp) {
+		int count = buffer.getInt();
+		Map<String, String> out = new LinkedHashMap<String, String>(Math.max(16, count * 4 / 3 + 1));
+		for (int i = 0; i < count; i++) {
+			String key = readString(buffer, tmp);
+			String value = readString(buffer, tmp);
+			if (key == null) {
+				throw new IllegalStateException("Invalid property name in snapshot");
+			}
+			out.put(key, value);
+		}
+		return out;
+	}
+
+	private static String readString(ByteBuffer buffer, byte[] tmp) {
+		int length = buffer.getInt();
+		if (length < 0) {
+			return null;
+		}
+		if (buffer.hasArray()) {
+			String out = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF_8);
+			buffer.position(buffer.position() + length);
+			return out;
+		}
+		byte[] bytes = length <= tmp.length ? tmp : new byte[length];
+		buffer.get(bytes, 0, length);
+		return new String(bytes, 0, length, UTF_8);
+	}
+
+	/**
+	 * Compiles a properties file, encoded with the default charset, into a snapshot.
+	 *
+	 * @param args the path to the properties file, followed by the path to the snapshot file to create.
+	 */
+	public static void main(String... args) {
+		if (args.length != 2) {
+			System.err.println("Usage: ConfigurationSnapshot <properties file> <snapshot file>");
+			return;
+		}
+		compile(new File(args[0]), new File(args[1]));
+	}
+}
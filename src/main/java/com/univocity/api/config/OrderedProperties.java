@@ -6,38 +6,394 @@
 
 package com.univocity.api.config;
 
+import java.io.*;
+import java.nio.charset.*;
 import java.util.*;
 
 /**
  * An override over {@link java.util.Properties} to return properties in the order they are defined in the file.
  *
+ * {@link #load(File, Charset)} parses files directly from a memory-mapped buffer. Values are kept in the storage
+ * inherited from {@link java.util.Properties}, and the insertion order of their keys is tracked separately by a
+ * {@link PropertyTable}, so an instance takes somewhat more memory than a plain {@link java.util.Properties}.
+ *
+ * Every modification is written through to the storage inherited from {@link java.util.Properties}, which remains
+ * the authoritative source of values. This keeps methods that can't be overridden here, such as {@code forEach},
+ * {@code compute} or {@code merge}, working as usual. Properties added or removed by such methods are picked up by
+ * the next iteration. Reads go through the inherited storage, so they are synchronized as in
+ * {@link java.util.Properties} (up to Java 8), and iterations read the value of each property the same way.
+ * Removals take constant time. Enumerations, iterators and collection views follow the insertion order, are weakly
+ * consistent and never throw {@link ConcurrentModificationException}.
+ *
  * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com</a>
  */
 public class OrderedProperties extends Properties {
 
 	private static final long serialVersionUID = 4335376309848461398L;
 
-	private final ArrayList<Object> propertySequence;
+	private transient PropertyTable table;
 
 	public OrderedProperties() {
-		propertySequence = new ArrayList<Object>();
+		table = new PropertyTable();
+	}
+
+	/**
+	 * Loads properties from a file, which is memory-mapped and parsed in place, with the same rules used by
+	 * {@link #load(Reader)}. Large files are mapped into memory, while small files are read with a single
+	 * read operation.
+	 *
+	 * @param file    the file with properties
+	 * @param charset the encoding of the file
+	 *
+	 * @throws IOException if the file can't be read
+	 */
+	public void load(File file, Charset charset) throws IOException {
+		PropertiesFileLoader.load(file, charset, this);
+	}
+
+	/**
+	 * Brings the table up to date with properties added or removed through inherited methods that bypass
+	 * {@link #put(Object, Object)} and {@link #remove(Object)}, such as {@code computeIfAbsent}. Such methods may
+	 * add and remove keys without changing the number of properties, so the key sets are always compared: keys
+	 * missing from the table are appended, and if the table is still larger, its stale keys are removed.
+	 */
+	private void reconcile() {
+		synchronized (this) {
+			for (Object key : super.keySet()) {
+				if (!table.containsKey(key)) {
+					table.put(key, Boolean.TRUE);
+				}
+			}
+			if (table.size() != super.size()) {
+				PropertyTable.Cursor cursor = table.cursor();
+				while (cursor.next()) {
+					if (!super.containsKey(cursor.key())) {
+						table.remove(cursor.key());
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Iterates over the properties in insertion order, reading their current values.
+	 */
+	private final class Entries {
+		private final PropertyTable.Cursor cursor;
+		private Object key;
+		private Object value;
+
+		Entries() {
+			reconcile();
+			cursor = table.cursor();
+		}
+
+		boolean next() {
+			while (cursor.next()) {
+				value = get(cursor.key());
+				if (value != null) {
+					key = cursor.key();
+					return true;
+				}
+			}
+			key = null;
+			value = null;
+			return false;
+		}
 	}
 
 	@Override
 	public Enumeration<?> propertyNames() {
-		return Collections.enumeration(propertySequence);
+		return keys();
+	}
+
+	@Override
+	public Set<String> stringPropertyNames() {
+		Set<String> names = new LinkedHashSet<String>();
+		Entries entries = new Entries();
+		while (entries.next()) {
+			if (entries.key instanceof String && entries.value instanceof String) {
+				names.add((String) entries.key);
+			}
+		}
+		return Collections.unmodifiableSet(names);
 	}
 
 	@Override
 	public Object put(Object key, Object value) {
-		propertySequence.remove(key);
-		propertySequence.add(key);
-		return super.put(key, value);
+		if (key == null || value == null) {
+			throw new NullPointerException();
+		}
+		if (table == null) {
+			//being deserialized: the table is rebuilt by readObject
+			return super.put(key, value);
+		}
+		synchronized (this) {
+			table.put(key, Boolean.TRUE);
+			return super.put(key, value);
+		}
+	}
+
+	@Override
+	public void putAll(Map<?, ?> t) {
+		for (Map.Entry<?, ?> e : t.entrySet()) {
+			put(e.getKey(), e.getValue());
+		}
 	}
 
 	@Override
 	public Object remove(Object key) {
-		propertySequence.remove(key);
-		return super.remove(key);
+		synchronized (this) {
+			table.remove(key);
+			return super.remove(key);
+		}
+	}
+
+	@Override
+	public void clear() {
+		synchronized (this) {
+			table.clear();
+			super.clear();
+		}
+	}
+
+	@Override
+	public Enumeration<Object> keys() {
+		return Collections.enumeration(snapshot(true));
+	}
+
+	@Override
+	public Enumeration<Object> elements() {
+		return Collections.enumeration(snapshot(false));
+	}
+
+	private List<Object> snapshot(boolean keys) {
+		List<Object> out = new ArrayList<Object>(size());
+		Entries entries = new Entries();
+		while (entries.next()) {
+			out.add(keys ? entries.key : entries.value);
+		}
+		return out;
+	}
+
+	@Override
+	public Set<Object> keySet() {
+		return new AbstractSet<Object>() {
+			@Override
+			public Iterator<Object> iterator() {
+				final Iterator<Map.Entry<Object, Object>> entries = new EntryIterator();
+				return new Iterator<Object>() {
+					@Override
+					public boolean hasNext() {
+						return entries.hasNext();
+					}
+
+					@Override
+					public Object next() {
+						return entries.next().getKey();
+					}
+
+					@Override
+					public void remove() {
+						entries.remove();
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return OrderedProperties.this.size();
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return containsKey(o);
+			}
+
+			@Override
+			public boolean remove(Object o) {
+				return OrderedProperties.this.remove(o) != null;
+			}
+		};
+	}
+
+	@Override
+	public Collection<Object> values() {
+		return Collections.unmodifiableList(snapshot(false));
+	}
+
+	@Override
+	public Set<Map.Entry<Object, Object>> entrySet() {
+		return new AbstractSet<Map.Entry<Object, Object>>() {
+			@Override
+			public Iterator<Map.Entry<Object, Object>> iterator() {
+				return new EntryIterator();
+			}
+
+			@Override
+			public int size() {
+				return OrderedProperties.this.size();
+			}
+		};
+	}
+
+	private final class EntryIterator implements Iterator<Map.Entry<Object, Object>> {
+		private final Entries entries = new Entries();
+		private boolean hasNext = entries.next();
+		private Object lastKey;
+
+		@Override
+		public boolean hasNext() {
+			return hasNext;
+		}
+
+		@Override
+		public Map.Entry<Object, Object> next() {
+			if (!hasNext) {
+				throw new NoSuchElementException();
+			}
+			lastKey = entries.key;
+			Map.Entry<Object, Object> entry = new AbstractMap.SimpleImmutableEntry<Object, Object>(lastKey, entries.value);
+			hasNext = entries.next();
+			return entry;
+		}
+
+		@Override
+		public void remove() {
+			if (lastKey == null) {
+				throw new IllegalStateException();
+			}
+			OrderedProperties.this.remove(lastKey);
+			lastKey = null;
+		}
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == this) {
+			return true;
+		}
+		if (!(o instanceof Map)) {
+			return false;
+		}
+		Map<?, ?> other = (Map<?, ?>) o;
+		if (other.size() != size()) {
+			return false;
+		}
+		Entries entries = new Entries();
+		while (entries.next()) {
+			if (!entries.value.equals(other.get(entries.key))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int h = 0;
+		Entries entries = new Entries();
+		while (entries.next()) {
+			h += entries.key.hashCode() ^ entries.value.hashCode();
+		}
+		return h;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder out = new StringBuilder("{");
+		Entries entries = new Entries();
+		while (entries.next()) {
+			if (out.length() > 1) {
+				out.append(", ");
+			}
+			out.append(entries.key).append('=').append(entries.value);
+		}
+		return out.append('}').toString();
+	}
+
+	/*
+	 * Methods added to Map in Java 8 that take only plain values are overridden here (without @Override, as they
+	 * don't exist in Java 6) so that they keep the insertion order. Compound operations lock on this instance, which
+	 * is the lock used by put and remove, as well as by the synchronized methods inherited from Hashtable. Methods
+	 * that take functions can't be declared under Java 6: the inherited implementations update the inherited storage
+	 * directly, and the table catches up on the next iteration.
+	 */
+
+	public Object getOrDefault(Object key, Object defaultValue) {
+		Object value = get(key);
+		return value == null ? defaultValue : value;
+	}
+
+	public Object putIfAbsent(Object key, Object value) {
+		synchronized (this) {
+			Object current = get(key);
+			return current == null ? put(key, value) : current;
+		}
+	}
+
+	public boolean remove(Object key, Object value) {
+		synchronized (this) {
+			Object current = get(key);
+			if (current != null && current.equals(value)) {
+				remove(key);
+				return true;
+			}
+			return false;
+		}
+	}
+
+	public boolean replace(Object key, Object oldValue, Object newValue) {
+		synchronized (this) {
+			Object current = get(key);
+			if (current != null && current.equals(oldValue)) {
+				put(key, newValue);
+				return true;
+			}
+			return false;
+		}
+	}
+
+	public Object replace(Object key, Object value) {
+		synchronized (this) {
+			return containsKey(key) ? put(key, value) : null;
+		}
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		List<Object> keys = snapshot(true);
+		List<Object> values = snapshot(false);
+		out.defaultWriteObject();
+		out.writeInt(keys.size());
+		for (int i = 0; i < keys.size(); i++) {
+			out.writeObject(keys.get(i));
+			out.writeObject(values.get(i));
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		int size = in.readInt();
+		table = new PropertyTable(size);
+		for (int i = 0; i < size; i++) {
+			Object key = in.readObject();
+			Object value = in.readObject();
+			table.put(key, Boolean.TRUE);
+			if (!super.containsKey(key)) {
+				//serialized by a version that didn't write through to the inherited storage
+				super.put(key, value);
+			}
+		}
+	}
+
+	@Override
+	public Object clone() {
+		OrderedProperties clone = new OrderedProperties();
+		clone.defaults = defaults;
+		Entries entries = new Entries();
+		while (entries.next()) {
+			clone.put(entries.key, entries.value);
+		}
+		return clone;
 	}
-}
\ No newline at end of file
+}
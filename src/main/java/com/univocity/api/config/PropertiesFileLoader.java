@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2013 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ */
+
+package com.univocity.api.config;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Loads properties from a file into a {@link Map}, following the same rules of {@link Properties#load(Reader)}.
+ *
+ * Instead of decoding the whole file through a {@link Reader}, the file is memory-mapped (or read with a single read
+ * operation if it is small) and parsed directly from its bytes. Lines made only of ASCII characters (the usual case
+ * in configuration files) are copied straight into a reusable line buffer, and only lines with other characters are
+ * decoded with the given {@link Charset}. Charsets that may encode the characters used by the properties syntax with
+ * bytes other than their ASCII values (such as UTF-16) are loaded with a regular {@link Reader} instead.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com</a>
+ */
+final class PropertiesFileLoader {
+
+	/**
+	 * Files smaller than this are read into a heap buffer. Mapped files remain mapped until the buffer is garbage
+	 * collected, which on some platforms prevents the file from being modified or deleted in the meantime.
+	 */
+	static final int MAPPING_THRESHOLD = 1 << 20;
+
+	private static final String SYNTAX = "\n\r\\=:#! \t\f";
+
+	private final ByteBuffer buffer;
+	private final Charset charset;
+	private final Map<Object, Object> target;
+	private final StringBuilder line = new StringBuilder(128);
+
+	private PropertiesFileLoader(ByteBuffer buffer, Charset charset, Map<Object, Object> target) {
+		this.buffer = buffer;
+		this.charset = charset;
+		this.target = target;
+	}
+
+	/**
+	 * Loads properties from a file into the given map.
+	 *
+	 * @param file    the file with properties
+	 * @param charset the encoding of the file
+	 * @param target  the map that will receive the properties found in the file.
+	 *
+	 * @throws IOException if the file can't be read
+	 */
+	static void load(File file, Charset charset, Map<Object, Object> target) throws IOException {
+		if (!isAsciiCompatible(charset)) {
+			Reader reader = new InputStreamReader(new FileInputStream(file), charset);
+			try {
+				Properties properties = new OrderedProperties();
+				properties.load(reader);
+				target.putAll(properties);
+			} finally {
+				reader.close();
+			}
+			return;
+		}
+
+		new PropertiesFileLoader(read(file), charset, target).parse();
+	}
+
+	/**
+	 * Reads the contents of a file into a buffer. Files larger than {@link #MAPPING_THRESHOLD} are memory-mapped,
+	 * while smaller files are read with a single read operation.
+	 *
+	 * @param file the file to read
+	 *
+	 * @return a buffer with the contents of the file, positioned at the beginning.
+	 *
+	 * @throws IOException if the file can't be read
+	 */
+	static ByteBuffer read(File file) throws IOException {
+		FileInputStream input = new FileInputStream(file);
+		try {
+			FileChannel channel = input.getChannel();
+			long size = channel.size();
+			if (size >= MAPPING_THRESHOLD) {
+				return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0) {
+					break;
+				}
+			}
+			buffer.flip();
+			return buffer;
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Computes the CRC-32 checksum of the remaining bytes of a buffer, without changing its position.
+	 */
+	static long checksum(ByteBuffer buffer) {
+		CRC32 crc = new CRC32();
+		if (buffer.hasArray()) {
+			crc.update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+		} else {
+			ByteBuffer input = buffer.duplicate();
+			byte[] chunk = new byte[8192];
+			while (input.hasRemaining()) {
+				int length = Math.min(chunk.length, input.remaining());
+				input.get(chunk, 0, length);
+				crc.update(chunk, 0, length);
+			}
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * Tests whether a charset encodes the characters used by the properties syntax with their ASCII values, and never
+	 * uses these values as part of the encoding of other characters.
+	 */
+	static boolean isAsciiCompatible(Charset charset) {
+		String name = charset.name();
+		if (!name.equals("UTF-8") && !name.equals("US-ASCII") && charset.newEncoder().maxBytesPerChar() != 1.0f) {
+			return false;
+		}
+		try {
+			return Arrays.equals(SYNTAX.getBytes(charset.name()), SYNTAX.getBytes("US-ASCII"));
+		} catch (UnsupportedEncodingException e) {
+			return false;
+		}
+	}
+
+	private void parse() {
+		int limit = buffer.limit();
+		int position = 0;
+
+		while (position < limit) {
+			line.setLength(0);
+			boolean continuation = false;
+			boolean hasContent = false;
+
+			while (position < limit) {
+				while (position < limit && isWhitespace(buffer.get(position))) {
+					position++;
+				}
+
+				int start = position;
+				boolean ascii = true;
+				while (position < limit) {
+					byte b = buffer.get(position);
+					if (b == '\n' || b == '\r') {
+						break;
+					}
+					ascii &= b >= 0;
+					position++;
+				}
+				int end = position;
+
+				if (position < limit) {
+					if (buffer.get(position++) == '\r' && position < limit && buffer.get(position) == '\n') {
+						position++;
+					}
+				}
+
+				if (!continuation && start < end && (buffer.get(start) == '#' || buffer.get(start) == '!')) {
+					break; //comment line
+				}
+
+				int lineStart = line.length();
+				append(start, end, ascii);
+				hasContent |= end > start;
+
+				int backslashes = 0;
+				for (int i = line.length() - 1; i >= lineStart && line.charAt(i) == '\\'; i--) {
+					backslashes++;
+				}
+				if ((backslashes & 1) == 0) {
+					break;
+				}
+				line.setLength(line.length() - 1);
+				continuation = true;
+			}
+
+			if (hasContent && line.length() > 0) {
+				processLine();
+			}
+		}
+	}
+
+	private void append(int start, int end, boolean ascii) {
+		if (ascii) {
+			for (int i = start; i < end; i++) {
+				line.append((char) buffer.get(i));
+			}
+		} else {
+			ByteBuffer slice = buffer.duplicate();
+			slice.limit(end);
+			slice.position(start);
+			line.append(charset.decode(slice));
+		}
+	}
+
+	private static boolean isWhitespace(int ch) {
+		return ch == ' ' || ch == '\t' || ch == '\f';
+	}
+
+	private void processLine() {
+		int limit = line.length();
+		int keyLength = 0;
+		int valueStart = limit;
+		boolean hasSeparator = false;
+		boolean precedingBackslash = false;
+
+		while (keyLength < limit) {
+			char ch = line.charAt(keyLength);
+			if ((ch == '=' || ch == ':') && !precedingBackslash) {
+				valueStart = keyLength + 1;
+				hasSeparator = true;
+				break;
+			} else if (isWhitespace(ch) && !precedingBackslash) {
+				valueStart = keyLength + 1;
+				break;
+			}
+			if (ch == '\\') {
+				precedingBackslash = !precedingBackslash;
+			} else {
+				precedingBackslash = false;
+			}
+			keyLength++;
+		}
+
+		while (valueStart < limit) {
+			char ch = line.charAt(valueStart);
+			if (!isWhitespace(ch)) {
+				if (!hasSeparator && (ch == '=' || ch == ':')) {
+					hasSeparator = true;
+				} else {
+					break;
+				}
+			}
+			valueStart++;
+		}
+
+		String key = convert(0, keyLength);
+		String value = convert(valueStart, limit);
+		target.put(key, value);
+	}
+
+	/**
+	 * Converts escape sequences found in a section of the current line, as {@link Properties#load(Reader)} does.
+	 */
+	private String convert(int from, int to) {
+		int i = from;
+		while (i < to && line.charAt(i) != '\\') {
+			i++;
+		}
+		if (i == to) {
+			return line.substring(from, to);
+		}
+
+		StringBuilder out = new StringBuilder(to - from);
+		out.append(line, from, i);
+		while (i < to) {
+			char ch = line.charAt(i++);
+			if (ch != '\\') {
+				out.append(ch);
+				continue;
+			}
+			if (i == to) {
+				break;
+			}
+			ch = line.charAt(i++);
+			if (ch == 'u') {
+				int value = 0;
+				for (int j = 0; j < 4; j++) {
+					int digit = i < to ? Character.digit(line.charAt(i++), 16) : -1;
+					if (digit < 0) {
+						throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+					}
+					value = (value << 4) + digit;
+				}
+				out.append((char) value);
+			} else if (ch == 't') {
+				out.append('\t');
+			} else if (ch == 'r') {
+				out.append('\r');
+			} else if (ch == 'n') {
+				out.append('\n');
+			} else if (ch == 'f') {
+				out.append('\f');
+			} else {
+				out.append(ch);
+			}
+		}
+		return out.toString();
+	}
+}
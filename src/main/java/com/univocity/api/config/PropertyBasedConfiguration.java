@@ -10,8 +10,10 @@ import com.univocity.api.common.*;
 import com.univocity.api.exception.*;
 
 import java.io.*;
+import java.nio.charset.*;
 import java.util.*;
 import java.util.Map.*;
+import java.util.concurrent.*;
 
 /**
  * A configuration class based on properties. Properties can contain values that refer to other properties,
@@ -40,12 +42,46 @@ import java.util.Map.*;
  *
  * </ul>
  *
+ * Properties can refer to other properties regardless of the order in which they are declared. Cyclic references
+ * between properties are reported with an {@link IllegalConfigurationException}.
+ *
+ * Values that are read frequently can be obtained through a {@link PropertyHandle}, e.g. with
+ * {@link #integerHandle(String)}, so that they are converted and validated only once.
+ *
+ * A configuration can be composed from multiple layers, e.g. defaults, environment overlays and per-host overrides,
+ * with {@link #PropertyBasedConfiguration(File[], boolean)}. Components that only need a subset of the properties
+ * can obtain a view of the properties that start with a given prefix with {@link #scope(String)}.
+ *
+ * Files and directories obtained from the configuration are validated against the filesystem on every call, unless
+ * a cache timeout is set with {@link #setValidationCacheTimeout(long, TimeUnit)}. Paths can also be validated in bulk
+ * and in parallel, e.g. at startup, with {@link #validateFiles(ExecutorService, boolean, boolean, boolean, String...)},
+ * {@link #validateDirectories(ExecutorService, boolean, boolean, boolean, String...)} and
+ * {@link #validateAll(ExecutorService)}, which validates every property declared as a file or directory with
+ * {@link #declareFile(String, boolean, boolean, boolean, boolean)} and
+ * {@link #declareDirectory(String, boolean, boolean, boolean, boolean)}.
+ *
  * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com</a>
  */
 public class PropertyBasedConfiguration {
 
+	private static final Object NULL_VALUE = new Object();
+
 	protected final Properties properties;
-	private final Map<String, String> values = new LinkedHashMap<String, String>();
+	private final PropertyTable values;
+
+	private final boolean lazy;
+	private final Map<String, String> resolved;
+	private final ConcurrentHashMap<String, Object> cache;
+
+	private final PropertyBasedConfiguration root;
+	private final String prefix;
+	private final int layerCount;
+
+	private final ConcurrentHashMap<String, ValidatedPath> validatedPaths;
+	private final ConcurrentHashMap<String, PathDeclaration> declaredPaths;
+	private volatile long validationCacheTimeout;
+
+	private final Map<String, String> systemProperties;
 
 	/**
 	 * Creates a configuration instance from an {@link java.io.InputStream}
@@ -55,7 +91,27 @@ public class PropertyBasedConfiguration {
 	 * @throws IllegalConfigurationException if the input can't be read
 	 */
 	public PropertyBasedConfiguration(InputStream inputProperties) throws IllegalConfigurationException {
-		this((Closeable) inputProperties);
+		this((Closeable) inputProperties, false);
+	}
+
+	/**
+	 * Creates a configuration instance from a {@link java.io.InputStream}, optionally in lazy mode.
+	 *
+	 * In lazy mode, properties are only indexed when loaded, and variables in the value of a property are resolved
+	 * the first time the property is read. Resolved values are cached for subsequent reads. This avoids resolving
+	 * (and keeping in memory) the values of properties that are never used, which is useful for large configurations
+	 * shared by multiple applications.
+	 *
+	 * Note that in lazy mode, references to undefined variables and cyclic references are only reported when the
+	 * affected properties are read.
+	 *
+	 * @param inputProperties an input with properties.
+	 * @param lazy            flag indicating whether properties should be resolved on demand.
+	 *
+	 * @throws IllegalConfigurationException if the input can't be read
+	 */
+	public PropertyBasedConfiguration(InputStream inputProperties, boolean lazy) throws IllegalConfigurationException {
+		this((Closeable) inputProperties, lazy);
 	}
 
 	/**
@@ -66,18 +122,59 @@ public class PropertyBasedConfiguration {
 	 * @throws IllegalConfigurationException if the input can't be read
 	 */
 	public PropertyBasedConfiguration(Reader inputProperties) throws IllegalConfigurationException {
-		this((Closeable) inputProperties);
+		this((Closeable) inputProperties, false);
 	}
 
 	/**
-	 * Creates a configuration instance from a {@link java.io.File}
+	 * Creates a configuration instance from a {@link java.io.Reader}, optionally in lazy mode.
+	 *
+	 * In lazy mode, properties are only indexed when loaded, and variables in the value of a property are resolved
+	 * the first time the property is read. Resolved values are cached for subsequent reads. This avoids resolving
+	 * (and keeping in memory) the values of properties that are never used, which is useful for large configurations
+	 * shared by multiple applications.
+	 *
+	 * Note that in lazy mode, references to undefined variables and cyclic references are only reported when the
+	 * affected properties are read.
+	 *
+	 * @param inputProperties an input with properties.
+	 * @param lazy            flag indicating whether properties should be resolved on demand.
+	 *
+	 * @throws IllegalConfigurationException if the input can't be read
+	 */
+	public PropertyBasedConfiguration(Reader inputProperties, boolean lazy) throws IllegalConfigurationException {
+		this((Closeable) inputProperties, lazy);
+	}
+
+	/**
+	 * Creates a configuration instance from a {@link java.io.File}, encoded with the default charset. The file is
+	 * memory-mapped and parsed in place (see {@link OrderedProperties#load(File, Charset)}).
 	 *
 	 * @param inputProperties an input with properties.
 	 *
 	 * @throws IllegalConfigurationException if the input can't be read
 	 */
 	public PropertyBasedConfiguration(File inputProperties) throws IllegalConfigurationException {
-		this(getFileReader(inputProperties));
+		this((Object) inputProperties, false);
+	}
+
+	/**
+	 * Creates a configuration instance from a {@link java.io.File}, optionally in lazy mode.
+	 *
+	 * In lazy mode, properties are only indexed when loaded, and variables in the value of a property are resolved
+	 * the first time the property is read. Resolved values are cached for subsequent reads. This avoids resolving
+	 * (and keeping in memory) the values of properties that are never used, which is useful for large configurations
+	 * shared by multiple applications.
+	 *
+	 * Note that in lazy mode, references to undefined variables and cyclic references are only reported when the
+	 * affected properties are read.
+	 *
+	 * @param inputProperties an input with properties.
+	 * @param lazy            flag indicating whether properties should be resolved on demand.
+	 *
+	 * @throws IllegalConfigurationException if the input can't be read
+	 */
+	public PropertyBasedConfiguration(File inputProperties, boolean lazy) throws IllegalConfigurationException {
+		this((Object) inputProperties, lazy);
 	}
 
 	/**
@@ -93,42 +190,189 @@ public class PropertyBasedConfiguration {
 	 * @throws IllegalConfigurationException if none of the given paths indicate a file or resource with properties.
 	 */
 	public PropertyBasedConfiguration(String... configurationPaths) throws IllegalConfigurationException {
-		this(openConfiguration(configurationPaths));
+		this(openConfiguration(configurationPaths), false);
+	}
+
+	/**
+	 * Creates a configuration instance from layers of properties files, such as defaults, environment overlays and
+	 * per-host overrides. Layers are loaded in the given order, and properties defined in a layer override the
+	 * properties with the same name defined in previous layers. Variables are resolved only after all layers are
+	 * loaded, so a property in a layer can refer to properties of any other layer.
+	 *
+	 * Files that don't exist are skipped, which allows optional overlays to be listed.
+	 *
+	 * @param layers the files with properties, from the most general to the most specific.
+	 * @param lazy   flag indicating whether properties should be resolved on demand.
+	 *               (see {@link #PropertyBasedConfiguration(File, boolean)}).
+	 *
+	 * @throws IllegalConfigurationException if none of the given files exist, or a file can't be read
+	 */
+	public PropertyBasedConfiguration(File[] layers, boolean lazy) throws IllegalConfigurationException {
+		this((Object[]) existingFiles(layers), lazy);
+	}
+
+	/**
+	 * Creates a configuration instance from layers of properties files, such as defaults, environment overlays and
+	 * per-host overrides. Layers are loaded in the given order, and properties defined in a layer override the
+	 * properties with the same name defined in previous layers. Variables are resolved only after all layers are
+	 * loaded, so a property in a layer can refer to properties of any other layer.
+	 *
+	 * Each path is read first as a file of the filesystem, then as a resource of the application (as in
+	 * {@link #PropertyBasedConfiguration(String...)}). Paths that can't be found are skipped, which allows optional
+	 * overlays to be listed.
+	 *
+	 * @param layerPaths the paths to the files with properties, from the most general to the most specific.
+	 * @param lazy       flag indicating whether properties should be resolved on demand.
+	 *                   (see {@link #PropertyBasedConfiguration(File, boolean)}).
+	 *
+	 * @throws IllegalConfigurationException if none of the given paths indicate a file or resource with properties,
+	 *                                       or a file can't be read
+	 */
+	public PropertyBasedConfiguration(String[] layerPaths, boolean lazy) throws IllegalConfigurationException {
+		this((Object[]) openLayers(layerPaths), lazy);
 	}
 
-	private PropertyBasedConfiguration(Closeable inputProperties) throws IllegalConfigurationException {
-		Args.notNull(inputProperties, "Properties file input");
-		properties = new OrderedProperties();
+	private PropertyBasedConfiguration(Object inputProperties, boolean lazy) throws IllegalConfigurationException {
+		this(new Object[]{inputProperties}, lazy);
+	}
+
+	private PropertyBasedConfiguration(Object[] layers, boolean lazy) throws IllegalConfigurationException {
+		OrderedProperties properties = new OrderedProperties();
+		this.properties = properties;
+		this.values = new PropertyTable();
+		this.lazy = lazy;
+		this.root = this;
+		this.prefix = "";
+		this.layerCount = layers.length;
+		this.validatedPaths = new ConcurrentHashMap<String, ValidatedPath>();
+		this.declaredPaths = new ConcurrentHashMap<String, PathDeclaration>();
+		this.systemProperties = new LinkedHashMap<String, String>();
 		try {
-			if (inputProperties instanceof InputStream) {
-				properties.load((InputStream) inputProperties);
-			} else if (inputProperties instanceof Reader) {
-				properties.load((Reader) inputProperties);
+			for (Object layer : layers) {
+				Args.notNull(layer, "Properties file input");
+				load(properties, layer);
 			}
-		} catch (Exception e) {
-			throw new IllegalConfigurationException("Error loading configuration from properties " + getPropertiesDescription(), e);
 		} finally {
-			if (inputProperties != null) {
-				try {
-					inputProperties.close();
-				} catch (Exception e) {
-					//ignore
+			for (Object layer : layers) {
+				if (layer instanceof Closeable) {
+					try {
+						((Closeable) layer).close();
+					} catch (Exception e) {
+						//ignore
+					}
 				}
 			}
 		}
 
-		Enumeration<?> keys = properties.propertyNames();
-		while (keys.hasMoreElements()) {
-			String key = (String) keys.nextElement();
+		if (lazy) {
+			resolved = new HashMap<String, String>();
+			cache = new ConcurrentHashMap<String, Object>();
+		} else {
+			resolved = null;
+			cache = null;
+
+			Map<String, String> resolvedValues = new HashMap<String, String>();
+			Enumeration<?> keys = properties.propertyNames();
+			while (keys.hasMoreElements()) {
+				String key = (String) keys.nextElement();
+				values.put(key, resolve(key, resolvedValues));
+			}
+		}
+	}
+
+	/**
+	 * Creates a view of a configuration, restricted to the properties that start with a given prefix.
+	 */
+	private PropertyBasedConfiguration(PropertyBasedConfiguration parent, String prefix) {
+		this.properties = parent.properties;
+		this.values = parent.values;
+		this.lazy = parent.lazy;
+		this.resolved = parent.resolved;
+		this.cache = parent.cache;
+		this.root = parent.root;
+		this.prefix = parent.prefix + prefix;
+		this.layerCount = parent.layerCount;
+		this.validatedPaths = parent.validatedPaths;
+		this.declaredPaths = parent.declaredPaths;
+		this.systemProperties = parent.systemProperties;
+	}
+
+	/**
+	 * Creates a configuration with properties that have already been resolved, e.g. by a {@link ConfigurationSnapshot}.
+	 *
+	 * @param resolvedValues   the properties and their resolved values, in order.
+	 * @param systemProperties the system properties used to resolve the given values, and their values.
+	 */
+	PropertyBasedConfiguration(Map<String, String> resolvedValues, Map<String, String> systemProperties) {
+		OrderedProperties properties = new OrderedProperties();
+		this.properties = properties;
+		this.values = new PropertyTable(resolvedValues.size());
+		this.lazy = false;
+		this.resolved = null;
+		this.cache = null;
+		this.root = this;
+		this.prefix = "";
+		this.layerCount = 1;
+		this.validatedPaths = new ConcurrentHashMap<String, ValidatedPath>();
+		this.declaredPaths = new ConcurrentHashMap<String, PathDeclaration>();
+		this.systemProperties = new LinkedHashMap<String, String>(systemProperties);
+
+		for (Entry<String, String> e : resolvedValues.entrySet()) {
+			String value = e.getValue();
+			properties.put(e.getKey(), value == null ? "" : value);
+			values.put(e.getKey(), value);
+		}
+	}
+
+	private void load(OrderedProperties properties, Object input) throws IllegalConfigurationException {
+		try {
+			if (input instanceof InputStream) {
+				properties.load((InputStream) input);
+			} else if (input instanceof Reader) {
+				properties.load((Reader) input);
+			} else if (input instanceof File) {
+				properties.load((File) input, Charset.defaultCharset());
+			}
+		} catch (Exception e) {
+			if (input instanceof File) {
+				throw new IllegalConfigurationException("Error loading properties from file " + ((File) input).getAbsolutePath(), e);
+			}
+			throw new IllegalConfigurationException("Error loading configuration from properties " + getPropertiesDescription(), e);
+		}
+	}
 
-			String parent = null;
-			int lastDot = key.lastIndexOf('.');
-			if (lastDot > 0) {
-				parent = key.substring(0, lastDot);
+	private static File[] existingFiles(File... layers) {
+		Args.notEmpty(layers, "List of properties files");
+		List<File> out = new ArrayList<File>(layers.length);
+		for (File layer : layers) {
+			Args.notNull(layer, "Properties file");
+			if (layer.isFile()) {
+				out.add(layer);
 			}
+		}
+		if (out.isEmpty()) {
+			throw new IllegalConfigurationException("Could not load a properties file from any of the given files: " + Arrays.toString(layers));
+		}
+		return out.toArray(new File[0]);
+	}
 
-			values.put(key, replaceProperty(properties.getProperty(key), parent));
+	private static InputStream[] openLayers(String... layerPaths) {
+		Args.notEmpty(layerPaths, "List of paths to look for properties files");
+		List<InputStream> out = new ArrayList<InputStream>(layerPaths.length);
+		for (String path : layerPaths) {
+			try {
+				out.add(new FileInputStream(path));
+			} catch (Exception e) {
+				InputStream input = PropertyBasedConfiguration.class.getResourceAsStream(path);
+				if (input != null) {
+					out.add(input);
+				}
+			}
 		}
+		if (out.isEmpty()) {
+			throw new IllegalConfigurationException("Could not load a properties file from any of the given paths: " + Arrays.toString(layerPaths));
+		}
+		return out.toArray(new InputStream[0]);
 	}
 
 	private static InputStream openConfiguration(String... pathsToTry) {
@@ -146,19 +390,10 @@ public class PropertyBasedConfiguration {
 		throw new IllegalConfigurationException("Could not load a properties file from any of the given paths: " + Arrays.toString(pathsToTry));
 	}
 
-	private static Reader getFileReader(File file) {
-		Args.notNull(file, "Properties file");
-		try {
-			return new FileReader(file);
-		} catch (Exception ex) {
-			throw new IllegalConfigurationException("Error loading properties from file " + file.getAbsolutePath(), ex);
-		}
-	}
-
 	@Override
 	public final String toString() {
 		StringBuilder out = new StringBuilder(getPropertiesDescription());
-		for (Entry<String, String> e : values.entrySet()) {
+		for (Entry<String, String> e : getValues().entrySet()) {
 			out.append('\n');
 			out.append('\t');
 			out.append(e.getKey());
@@ -168,12 +403,142 @@ public class PropertyBasedConfiguration {
 		return out.toString();
 	}
 
+	/**
+	 * Returns a view of the properties of this configuration whose names start with a given prefix. In the returned
+	 * configuration, properties are read without the prefix, e.g. {@code config.scope("db.").getProperty("url")}
+	 * returns the value of property {@code db.url}.
+	 *
+	 * Views share the properties and the resolved values of this configuration, so they are cheap to create and no
+	 * property is resolved twice. Views can be scoped further: {@code config.scope("db.").scope("pool.")} reads
+	 * properties that start with {@code db.pool.}.
+	 *
+	 * @param prefix the prefix of the properties to expose, e.g. {@code "db."}
+	 *
+	 * @return a view of this configuration restricted to the properties that start with the given prefix.
+	 */
+	public final PropertyBasedConfiguration scope(String prefix) {
+		Args.notEmpty(prefix, "Property prefix");
+		return new PropertyBasedConfiguration(this, prefix);
+	}
+
+	/**
+	 * Returns the prefix of the properties exposed by this configuration, if it was obtained with
+	 * {@link #scope(String)}.
+	 *
+	 * @return the prefix of all properties of this configuration, or an empty {@code String} if this is not a scoped view.
+	 */
+	public final String getScope() {
+		return prefix;
+	}
+
+	/**
+	 * Returns an unmodifiable view of all properties of this configuration, with their resolved values, in the order
+	 * they were declared. Scoped views return only the properties that start with their prefix, without the prefix.
+	 *
+	 * @return the properties and their values.
+	 */
+	final Map<String, String> getValues() {
+		Map<String, String> out = new LinkedHashMap<String, String>();
+		if (lazy) {
+			Enumeration<?> keys = properties.propertyNames();
+			while (keys.hasMoreElements()) {
+				String key = (String) keys.nextElement();
+				if (key.startsWith(prefix)) {
+					out.put(key.substring(prefix.length()), getResolvedValue(key));
+				}
+			}
+		} else {
+			PropertyTable.Cursor cursor = values.cursor();
+			while (cursor.next()) {
+				String key = (String) cursor.key();
+				if (key.startsWith(prefix)) {
+					out.put(key.substring(prefix.length()), (String) cursor.value());
+				}
+			}
+		}
+		return Collections.unmodifiableMap(out);
+	}
+
+	/**
+	 * Returns the number of properties files (layers) this configuration was loaded from.
+	 *
+	 * @return the number of layers of this configuration.
+	 */
+	final int getLayerCount() {
+		return layerCount;
+	}
+
+	/**
+	 * Returns the system properties that were used to resolve the values of this configuration, with the values they
+	 * had when they were used. In lazy mode, only properties resolved so far are taken into account.
+	 *
+	 * @return the system properties this configuration depends on.
+	 */
+	final Map<String, String> getSystemProperties() {
+		if (lazy) {
+			synchronized (resolved) {
+				return new LinkedHashMap<String, String>(systemProperties);
+			}
+		}
+		return Collections.unmodifiableMap(systemProperties);
+	}
+
+	private String scoped(String property) {
+		return prefix.length() == 0 || property == null ? property : prefix.concat(property);
+	}
+
+	/**
+	 * Tests whether a property is defined in this configuration.
+	 *
+	 * @param property the property name
+	 *
+	 * @return {@code true} if the property exists, otherwise {@code false}
+	 */
+	final boolean containsProperty(String property) {
+		property = scoped(property);
+		return lazy ? properties.containsKey(property) : values.containsKey(property);
+	}
+
+	/**
+	 * Returns the resolved value of a property. In lazy mode, the property is resolved on first access and cached.
+	 *
+	 * @param property the property name
+	 *
+	 * @return the resolved value of the property, or {@code null} if the property doesn't exist or has no value.
+	 */
+	final String getValue(String property) {
+		return getResolvedValue(scoped(property));
+	}
+
+	private String getResolvedValue(String property) {
+		if (!lazy) {
+			return (String) values.get(property);
+		}
+		Object value = cache.get(property);
+		if (value == null) {
+			if (!properties.containsKey(property)) {
+				return null;
+			}
+			synchronized (resolved) {
+				value = resolve(property, resolved);
+			}
+			if (value == null) {
+				value = NULL_VALUE;
+			}
+			cache.put(property, value);
+		}
+		return value == NULL_VALUE ? null : (String) value;
+	}
+
 	/**
 	 * Describes the sort of configuration managed by this class.
 	 *
 	 * @return a description of the configuration
 	 */
 	protected String getPropertiesDescription() {
+		if (root != this) {
+			return root.getPropertiesDescription() + " (properties starting with '" + prefix + "')";
+		}
 		return "properties file";
 	}
 
@@ -252,52 +617,163 @@ public class PropertyBasedConfiguration {
 		}
 	}
 
-	private String replaceProperty(String value, String parentProperty) {
-		if (Args.isBlank(value)) {
-			return null;
+	/**
+	 * Resolves the value of a property, replacing any variables between '${' and '}' by their values. Properties
+	 * referred to by variables are resolved first (in topological order of their dependencies), regardless of the
+	 * order in which they are declared. Results are memoized so each property is parsed and resolved only once.
+	 *
+	 * Dependencies are followed with an explicit stack instead of recursion, so long chains of references can't
+	 * exhaust the call stack.
+	 *
+	 * @param key      the property to resolve
+	 * @param resolved the properties resolved so far, and their values
+	 *
+	 * @return the resolved value of the property
+	 *
+	 * @throws IllegalConfigurationException if a variable has no value defined, or if properties refer to each other
+	 *                                       in a cycle.
+	 */
+	private String resolve(String key, Map<String, String> resolved) throws IllegalConfigurationException {
+		if (resolved.containsKey(key)) {
+			return resolved.get(key);
 		}
-		String originalValue = value;
 
-		for (String key : listVariables(value)) {
-			String var;
-			boolean found = false;
+		List<String> path = new ArrayList<String>();
+		Set<String> inPath = new HashSet<String>();
+		Map<String, List<Object>> parsed = new HashMap<String, List<Object>>();
+
+		path.add(key);
+		inPath.add(key);
+		while (!path.isEmpty()) {
+			String current = path.get(path.size() - 1);
 
-			if (values.containsKey(key)) {
-				var = values.get(key);
-				found = true;
+			List<Object> segments = parsed.get(current);
+			if (segments == null) {
+				segments = parseProperty(current);
+				parsed.put(current, segments);
+			}
+
+			String dependency = null;
+			for (Object segment : segments) {
+				if (segment instanceof Reference && !resolved.containsKey(((Reference) segment).property)) {
+					dependency = ((Reference) segment).property;
+					break;
+				}
+			}
+
+			if (dependency == null) {
+				resolved.put(current, join(segments, resolved));
+				path.remove(path.size() - 1);
+				inPath.remove(current);
+				parsed.remove(current);
+			} else if (inPath.add(dependency)) {
+				path.add(dependency);
 			} else {
-				if ("user.home".equals(key)) {
-					var = normalizeFilePath(System.getProperty("user.home"));
-					found = true;
-				} else {
-					var = System.getProperty(key);
+				StringBuilder cycle = new StringBuilder();
+				for (String property : path.subList(path.indexOf(dependency), path.size())) {
+					cycle.append(property).append(" -> ");
 				}
+				cycle.append(dependency);
+				throw new IllegalConfigurationException("Invalid configuration! Cyclic reference between properties: " + cycle);
 			}
+		}
+		return resolved.get(key);
+	}
 
-			if (var == null && parentProperty != null) {
-				String parent = parentProperty;
+	/**
+	 * Breaks down the value of a property into literal segments and {@link Reference}s to other properties.
+	 * Variables that refer to system properties are replaced by their values. Blank values produce no segments.
+	 */
+	private List<Object> parseProperty(String key) {
+		String value = properties.getProperty(key);
+		if (Args.isBlank(value)) {
+			return Collections.emptyList();
+		}
 
-				while (var == null) {
-					found = values.containsKey(parent + "." + key);
-					if (found) {
-						var = values.get(parent + "." + key);
-						break;
-					}
-					int dot = parent.lastIndexOf('.');
-					if (dot > 0) {
-						parent = parent.substring(0, dot);
-					} else {
-						break;
-					}
+		String parent = null;
+		int lastDot = key.lastIndexOf('.');
+		if (lastDot > 0) {
+			parent = key.substring(0, lastDot);
+		}
+
+		List<Object> segments = new ArrayList<Object>();
+		int from = 0;
+		int start;
+		while ((start = value.indexOf("${", from)) >= 0) {
+			int end = value.indexOf('}', start + 2);
+			if (end < 0) {
+				break;
+			}
+			if (start > from) {
+				segments.add(value.substring(from, start));
+			}
+			segments.add(getVariableValue(key, value.substring(start + 2, end), value, parent));
+			from = end + 1;
+		}
+		if (from < value.length()) {
+			segments.add(value.substring(from));
+		}
+		return segments;
+	}
+
+	private Object getVariableValue(String property, String key, String originalValue, String parentProperty) {
+		if (!key.equals(property) && properties.containsKey(key)) {
+			return new Reference(key);
+		}
+		String var = System.getProperty(key);
+		systemProperties.put(key, var);
+		if ("user.home".equals(key)) {
+			return normalizeFilePath(var);
+		}
+		if (var != null) {
+			return var;
+		}
+
+		if (parentProperty != null) {
+			String parent = parentProperty;
+			while (true) {
+				String candidate = parent + "." + key;
+				if (!candidate.equals(property) && properties.containsKey(candidate)) {
+					return new Reference(candidate);
+				}
+				int dot = parent.lastIndexOf('.');
+				if (dot > 0) {
+					parent = parent.substring(0, dot);
+				} else {
+					break;
 				}
 			}
+		}
+
+		throw new IllegalConfigurationException("Invalid configuration! No value defined for ${" + key + "} in " + originalValue);
+	}
 
-			if (var == null && !found) {
-				throw new IllegalConfigurationException("Invalid configuration! No value defined for ${" + key + "} in " + originalValue);
+	private String join(List<Object> segments, Map<String, String> resolved) {
+		if (segments.isEmpty()) {
+			return null;
+		} else if (segments.size() == 1 && !(segments.get(0) instanceof Reference)) {
+			return (String) segments.get(0);
+		}
+		StringBuilder out = new StringBuilder();
+		for (Object segment : segments) {
+			if (segment instanceof Reference) {
+				out.append(resolved.get(((Reference) segment).property));
+			} else {
+				out.append(segment);
 			}
-			value = replaceVariables(value, key, var);
 		}
-		return value;
+		return out.toString();
+	}
+
+	/**
+	 * A reference to another property, found in the value of a property.
+	 */
+	private static final class Reference {
+		final String property;
+
+		Reference(String property) {
+			this.property = property;
+		}
 	}
 
 	/**
@@ -309,11 +785,11 @@ public class PropertyBasedConfiguration {
 	 * @return the property value, if present in the configuration, or the default value in case the property doesn't exist.
 	 */
 	public final String getProperty(String property, String defaultValue) {
-		if (!values.containsKey(property)) {
+		if (!containsProperty(property)) {
 			return defaultValue;
 		}
 
-		return values.get(property);
+		return getValue(property);
 	}
 
 	/**
@@ -326,11 +802,11 @@ public class PropertyBasedConfiguration {
 	 * @throws IllegalConfigurationException if the property is not present in the configuration.
 	 */
 	public final String getProperty(String property) throws IllegalConfigurationException {
-		if (!values.containsKey(property)) {
+		if (!containsProperty(property)) {
 			throw new IllegalConfigurationException("Invalid configuration in " + getPropertiesDescription() + "! Property '" + property + "' could not be found.");
 		}
 
-		return values.get(property);
+		return getValue(property);
 	}
 
 	/**
@@ -436,6 +912,13 @@ public class PropertyBasedConfiguration {
 		String path = getProperty(property, keyValuePairs);
 		String description = isDirectory ? "Directory" : "File";
 
+		if (keyValuePairs.length == 0) {
+			String declaration = getValidationKey(scoped(property), isDirectory, validateRead, validateWrite, create);
+			if (!declaredPaths.containsKey(declaration)) {
+				declaredPaths.putIfAbsent(declaration, new PathDeclaration(scoped(property), isDirectory, mandatory, validateRead, validateWrite, create));
+			}
+		}
+
 		if (path == null) {
 			if (mandatory) {
 				throw new IllegalConfigurationException(description + " path undefined. Property '" + property + "' must be set with a valid path.");
@@ -445,6 +928,32 @@ public class PropertyBasedConfiguration {
 		}
 		path = normalizeFilePath(path);
 
+		long timeout = root.validationCacheTimeout;
+		if (timeout == 0 || keyValuePairs.length > 0) {
+			return validatePath(property, path, isDirectory, validateRead, validateWrite, create);
+		}
+
+		String key = getValidationKey(path, isDirectory, validateRead, validateWrite, create);
+		ValidatedPath validated = validatedPaths.get(key);
+		if (validated == null || System.nanoTime() - validated.validationTime >= timeout) {
+			validated = new ValidatedPath(property, path, isDirectory, validateRead, validateWrite, create);
+			validatedPaths.put(key, validated);
+		}
+		return validated.file;
+	}
+
+	private static String getValidationKey(String path, boolean isDirectory, boolean validateRead, boolean validateWrite, boolean create) {
+		StringBuilder out = new StringBuilder(path.length() + 4);
+		out.append(isDirectory ? 'd' : 'f');
+		out.append(validateRead ? 'r' : '-');
+		out.append(validateWrite ? 'w' : '-');
+		out.append(create ? 'c' : '-');
+		out.append(path);
+		return out.toString();
+	}
+
+	private static File validatePath(String property, String path, boolean isDirectory, boolean validateRead, boolean validateWrite, boolean create) throws IllegalConfigurationException {
+		String description = isDirectory ? "Directory" : "File";
 		File file = new File(path);
 
 		String baseErrorMessage = ". Path defined by property '" + property + "' is: " + path;
@@ -460,7 +969,8 @@ public class PropertyBasedConfiguration {
 					throw new IllegalConfigurationException("Cannot create " + description + baseErrorMessage, e);
 				}
 			}
-			if (!created) {
+			//the file might have been created concurrently, e.g. by another validation
+			if (!created && !file.exists()) {
 				throw new IllegalConfigurationException("Cannot create " + description + baseErrorMessage);
 			}
 		}
@@ -481,6 +991,241 @@ public class PropertyBasedConfiguration {
 		return file;
 	}
 
+	/**
+	 * The result of a successful validation of a path, kept in cache while the cache timeout doesn't expire.
+	 */
+	private static final class ValidatedPath {
+		final String property;
+		final String path;
+		final boolean isDirectory;
+		final boolean validateRead;
+		final boolean validateWrite;
+		final boolean create;
+		final File file;
+		final long validationTime;
+
+		ValidatedPath(String property, String path, boolean isDirectory, boolean validateRead, boolean validateWrite, boolean create) {
+			this.property = property;
+			this.path = path;
+			this.isDirectory = isDirectory;
+			this.validateRead = validateRead;
+			this.validateWrite = validateWrite;
+			this.create = create;
+			this.file = validatePath(property, path, isDirectory, validateRead, validateWrite, create);
+			this.validationTime = System.nanoTime();
+		}
+	}
+
+	/**
+	 * A property declared as a file or directory, validated by {@link #validateAll(ExecutorService)}.
+	 */
+	private static final class PathDeclaration {
+		final String property;
+		final boolean isDirectory;
+		final boolean mandatory;
+		final boolean validateRead;
+		final boolean validateWrite;
+		final boolean create;
+
+		PathDeclaration(String property, boolean isDirectory, boolean mandatory, boolean validateRead, boolean validateWrite, boolean create) {
+			this.property = property;
+			this.isDirectory = isDirectory;
+			this.mandatory = mandatory;
+			this.validateRead = validateRead;
+			this.validateWrite = validateWrite;
+			this.create = create;
+		}
+	}
+
+	/**
+	 * Declares that a property of the configuration contains the path to a file, so that it is validated by
+	 * {@link #validateAll(ExecutorService)} even if the file was never obtained with
+	 * {@link #getFile(String, boolean, boolean, boolean, boolean, String...)}. Properties read as files are declared
+	 * automatically.
+	 *
+	 * @param property      the name of the property whose value contains the path to a file.
+	 * @param mandatory     flag indicating whether the property must be defined.
+	 * @param validateRead  flag indicating whether the file must have read permissions.
+	 * @param validateWrite flag indicating whether the file must have write permissions.
+	 * @param create        flag indicating whether the file must be created if it doesn't exist.
+	 */
+	public final void declareFile(String property, boolean mandatory, boolean validateRead, boolean validateWrite, boolean create) {
+		declarePath(property, false, mandatory, validateRead, validateWrite, create);
+	}
+
+	/**
+	 * Declares that a property of the configuration contains the path to a directory, so that it is validated by
+	 * {@link #validateAll(ExecutorService)} even if the directory was never obtained with
+	 * {@link #getDirectory(String, boolean, boolean, boolean, boolean, String...)}. Properties read as directories are
+	 * declared automatically.
+	 *
+	 * @param property      the name of the property whose value contains the path to a directory.
+	 * @param mandatory     flag indicating whether the property must be defined.
+	 * @param validateRead  flag indicating whether the directory must have read permissions.
+	 * @param validateWrite flag indicating whether the directory must have write permissions.
+	 * @param create        flag indicating whether the directory must be created if it doesn't exist.
+	 */
+	public final void declareDirectory(String property, boolean mandatory, boolean validateRead, boolean validateWrite, boolean create) {
+		declarePath(property, true, mandatory, validateRead, validateWrite, create);
+	}
+
+	private void declarePath(String property, boolean isDirectory, boolean mandatory, boolean validateRead, boolean validateWrite, boolean create) {
+		Args.notBlank(property, "Property name");
+		String key = getValidationKey(scoped(property), isDirectory, validateRead, validateWrite, create);
+		declaredPaths.put(key, new PathDeclaration(scoped(property), isDirectory, mandatory, validateRead, validateWrite, create));
+	}
+
+	private void validate(PathDeclaration declaration) throws IllegalConfigurationException {
+		String path = root.getProperty(declaration.property, (String) null);
+		if (path == null) {
+			if (declaration.mandatory) {
+				String description = declaration.isDirectory ? "Directory" : "File";
+				throw new IllegalConfigurationException(description + " path undefined. Property '" + declaration.property + "' must be set with a valid path.");
+			}
+			return;
+		}
+		path = normalizeFilePath(path);
+
+		if (root.validationCacheTimeout == 0) {
+			validatePath(declaration.property, path, declaration.isDirectory, declaration.validateRead, declaration.validateWrite, declaration.create);
+			return;
+		}
+
+		String key = getValidationKey(path, declaration.isDirectory, declaration.validateRead, declaration.validateWrite, declaration.create);
+		try {
+			validatedPaths.put(key, new ValidatedPath(declaration.property, path, declaration.isDirectory, declaration.validateRead, declaration.validateWrite, declaration.create));
+		} catch (IllegalConfigurationException e) {
+			validatedPaths.remove(key);
+			throw e;
+		}
+	}
+
+	/**
+	 * Sets for how long the result of a successful validation of a file or directory is reused. While the timeout
+	 * doesn't expire, methods such as {@link #getFile(String, boolean, boolean, boolean, String...)} and
+	 * {@link #getDirectory(String, boolean, boolean, boolean, String...)} return the validated path without accessing
+	 * the filesystem again, which is useful when files are stored in network filesystems.
+	 *
+	 * Failed validations are never cached. Paths that depend on variables between '!{' and '}' are validated on every
+	 * call. The cache is shared with all views obtained through {@link #scope(String)}.
+	 *
+	 * @param timeout the time to keep validation results. Use {@code 0} to validate paths on every call (the default).
+	 * @param unit    the unit of the given timeout.
+	 */
+	public final void setValidationCacheTimeout(long timeout, TimeUnit unit) {
+		Args.positiveOrZero(timeout, "Validation cache timeout");
+		Args.notNull(unit, "Time unit");
+		root.validationCacheTimeout = unit.toNanos(timeout);
+		if (timeout == 0) {
+			validatedPaths.clear();
+		}
+	}
+
+	/**
+	 * Validates the files whose paths are associated with the given properties in parallel, using the threads of a
+	 * given {@link ExecutorService}. Refer to {@link #getFile(String, boolean, boolean, boolean, String...)} for
+	 * details about the validations performed. If a validation cache timeout is set, the results are cached.
+	 *
+	 * @param executor      the executor used to validate paths in parallel.
+	 * @param validateRead  flag indicating whether the files must have read permissions.
+	 * @param validateWrite flag indicating whether the files must have write permissions.
+	 * @param create        flag indicating whether the files must be created if they don't exist.
+	 * @param properties    names of the properties whose values contain paths to files.
+	 *
+	 * @throws IllegalConfigurationException if any validation fails. The message lists all failed validations.
+	 */
+	public final void validateFiles(ExecutorService executor, boolean validateRead, boolean validateWrite, boolean create, String... properties) throws IllegalConfigurationException {
+		validatePaths(executor, false, validateRead, validateWrite, create, properties);
+	}
+
+	/**
+	 * Validates the directories whose paths are associated with the given properties in parallel, using the threads
+	 * of a given {@link ExecutorService}. Refer to {@link #getDirectory(String, boolean, boolean, boolean, String...)}
+	 * for details about the validations performed. If a validation cache timeout is set, the results are cached.
+	 *
+	 * @param executor      the executor used to validate paths in parallel.
+	 * @param validateRead  flag indicating whether the directories must have read permissions.
+	 * @param validateWrite flag indicating whether the directories must have write permissions.
+	 * @param create        flag indicating whether the directories must be created if they don't exist.
+	 * @param properties    names of the properties whose values contain paths to directories.
+	 *
+	 * @throws IllegalConfigurationException if any validation fails. The message lists all failed validations.
+	 */
+	public final void validateDirectories(ExecutorService executor, boolean validateRead, boolean validateWrite, boolean create, String... properties) throws IllegalConfigurationException {
+		validatePaths(executor, true, validateRead, validateWrite, create, properties);
+	}
+
+	private void validatePaths(ExecutorService executor, final boolean isDirectory, final boolean validateRead, final boolean validateWrite, final boolean create, String... properties) {
+		Args.notNull(executor, "Executor");
+		Args.notEmpty(properties, "Properties to validate");
+
+		List<Callable<Object>> validations = new ArrayList<Callable<Object>>(properties.length);
+		for (final String property : properties) {
+			validations.add(new Callable<Object>() {
+				@Override
+				public Object call() {
+					return getValidatedPath(property, null, isDirectory, true, validateRead, validateWrite, create);
+				}
+			});
+		}
+		runValidations(executor, validations);
+	}
+
+	/**
+	 * Validates, in parallel, all properties declared as files or directories, whether or not their values have been
+	 * read yet. Properties are declared with {@link #declareFile(String, boolean, boolean, boolean, boolean)} and
+	 * {@link #declareDirectory(String, boolean, boolean, boolean, boolean)}, or when they are first read as files or
+	 * directories. If a validation cache timeout is set (see {@link #setValidationCacheTimeout(long, TimeUnit)}), the
+	 * cache is refreshed and paths that are no longer valid are removed from it.
+	 *
+	 * @param executor the executor used to validate paths in parallel.
+	 *
+	 * @throws IllegalConfigurationException if any validation fails. The message lists all failed validations.
+	 */
+	public final void validateAll(ExecutorService executor) throws IllegalConfigurationException {
+		Args.notNull(executor, "Executor");
+
+		List<Callable<Object>> validations = new ArrayList<Callable<Object>>(declaredPaths.size());
+		for (final PathDeclaration declaration : declaredPaths.values()) {
+			validations.add(new Callable<Object>() {
+				@Override
+				public Object call() {
+					validate(declaration);
+					return null;
+				}
+			});
+		}
+		runValidations(executor, validations);
+	}
+
+	private void runValidations(ExecutorService executor, List<Callable<Object>> validations) {
+		List<Future<Object>> results = new ArrayList<Future<Object>>(validations.size());
+		for (Callable<Object> validation : validations) {
+			results.add(executor.submit(validation));
+		}
+
+		StringBuilder errors = null;
+		for (Future<Object> result : results) {
+			try {
+				result.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Thread interrupted while validating paths of " + getPropertiesDescription(), e);
+			} catch (ExecutionException e) {
+				if (!(e.getCause() instanceof IllegalConfigurationException)) {
+					throw new IllegalConfigurationException("Error validating paths of " + getPropertiesDescription(), e.getCause());
+				}
+				if (errors == null) {
+					errors = new StringBuilder("Invalid configuration in ").append(getPropertiesDescription()).append('!');
+				}
+				errors.append('\n').append(e.getCause().getMessage());
+			}
+		}
+		if (errors != null) {
+			throw new IllegalConfigurationException(errors.toString());
+		}
+	}
+
 	/**
 	 * Given a property of the configuration, reads the property value as a path to a directory, replacing any
 	 * variables between '!{' and '}', and returns an instance of {@link java.io.File} for that path, ensuring the
@@ -683,12 +1428,48 @@ public class PropertyBasedConfiguration {
 	 * @return the property value, or the default value if the property is not present in the configuration.
 	 */
 	public final Integer getInteger(String property, Integer defaultValue) {
-		if (!values.containsKey(property)) {
+		if (!containsProperty(property)) {
 			return defaultValue;
 		}
 		return getInteger(property);
 	}
 
+	/**
+	 * Returns the {@code Long} value associated with a property in the configuration
+	 *
+	 * @param property the property name
+	 *
+	 * @return the property value, or {@code null} if no value is provided.
+	 *
+	 * @throws IllegalConfigurationException if the property is not present in the configuration.
+	 */
+	public final Long getLong(String property) {
+		String value = getProperty(property);
+		if (value == null) {
+			return null;
+		}
+		try {
+			return Long.valueOf(value);
+		} catch (Exception ex) {
+			throw new IllegalConfigurationException("Cannot convert value of property " + property + " to a valid long number. Got: " + value);
+		}
+	}
+
+	/**
+	 * Returns the {@code Long} value associated with a property in the configuration
+	 *
+	 * @param property     the property name
+	 * @param defaultValue a default value to return in case the property is not present in the configuration
+	 *
+	 * @return the property value, or the default value if the property is not present in the configuration.
+	 */
+	public final Long getLong(String property, Long defaultValue) {
+		if (!containsProperty(property)) {
+			return defaultValue;
+		}
+		return getLong(property);
+	}
+
 	/**
 	 * Returns a {@code List} of values associated with a property in the configuration. Assumes the values are
 	 * separated by comma.
@@ -727,4 +1508,160 @@ public class PropertyBasedConfiguration {
 		}
 		return out;
 	}
+
+	/**
+	 * Returns a handle to the value associated with a property in the configuration. The value is read once, when the
+	 * handle is created.
+	 *
+	 * @param property the property name
+	 *
+	 * @return a handle to the property value
+	 *
+	 * @throws IllegalConfigurationException if the property is not present in the configuration.
+	 */
+	public final PropertyHandle<String> stringHandle(String property) throws IllegalConfigurationException {
+		return new PropertyHandle<String>(property, getProperty(property));
+	}
+
+	/**
+	 * Returns a handle to the value associated with a property in the configuration. The value is read once, when the
+	 * handle is created.
+	 *
+	 * @param property     the property name
+	 * @param defaultValue a default value to use in case the property is not present in the configuration
+	 *
+	 * @return a handle to the property value, or to the default value if the property is not present in the configuration.
+	 */
+	public final PropertyHandle<String> stringHandle(String property, String defaultValue) {
+		return new PropertyHandle<String>(property, getProperty(property, defaultValue));
+	}
+
+	/**
+	 * Returns a handle to the {@code Integer} value associated with a property in the configuration.
+	 * The value is converted once, when the handle is created.
+	 *
+	 * @param property the property name
+	 *
+	 * @return a handle to the property value
+	 *
+	 * @throws IllegalConfigurationException if the property is not present in the configuration, or its value is not
+	 *                                       a valid integer number.
+	 */
+	public final PropertyHandle<Integer> integerHandle(String property) throws IllegalConfigurationException {
+		return new PropertyHandle<Integer>(property, getInteger(property));
+	}
+
+	/**
+	 * Returns a handle to the {@code Integer} value associated with a property in the configuration.
+	 * The value is converted once, when the handle is created.
+	 *
+	 * @param property     the property name
+	 * @param defaultValue a default value to use in case the property is not present in the configuration
+	 *
+	 * @return a handle to the property value, or to the default value if the property is not present in the configuration.
+	 *
+	 * @throws IllegalConfigurationException if the property value is not a valid integer number.
+	 */
+	public final PropertyHandle<Integer> integerHandle(String property, Integer defaultValue) throws IllegalConfigurationException {
+		return new PropertyHandle<Integer>(property, getInteger(property, defaultValue));
+	}
+
+	/**
+	 * Returns a handle to the {@code Long} value associated with a property in the configuration.
+	 * The value is converted once, when the handle is created.
+	 *
+	 * @param property the property name
+	 *
+	 * @return a handle to the property value
+	 *
+	 * @throws IllegalConfigurationException if the property is not present in the configuration, or its value is not
+	 *                                       a valid long number.
+	 */
+	public final PropertyHandle<Long> longHandle(String property) throws IllegalConfigurationException {
+		return new PropertyHandle<Long>(property, getLong(property));
+	}
+
+	/**
+	 * Returns a handle to the {@code Long} value associated with a property in the configuration.
+	 * The value is converted once, when the handle is created.
+	 *
+	 * @param property     the property name
+	 * @param defaultValue a default value to use in case the property is not present in the configuration
+	 *
+	 * @return a handle to the property value, or to the default value if the property is not present in the configuration.
+	 *
+	 * @throws IllegalConfigurationException if the property value is not a valid long number.
+	 */
+	public final PropertyHandle<Long> longHandle(String property, Long defaultValue) throws IllegalConfigurationException {
+		return new PropertyHandle<Long>(property, getLong(property, defaultValue));
+	}
+
+	/**
+	 * Returns a handle to the unmodifiable {@code List} of values associated with a property in the configuration.
+	 * Assumes the values are separated by comma. The value is split once, when the handle is created.
+	 *
+	 * @param property the property name
+	 *
+	 * @return a handle to the list of values associated with the given property
+	 *
+	 * @throws IllegalConfigurationException if the property is not present in the configuration.
+	 */
+	public final PropertyHandle<List<String>> listHandle(String property) throws IllegalConfigurationException {
+		return listHandle(property, ",");
+	}
+
+	/**
+	 * Returns a handle to the unmodifiable {@code List} of values associated with a property in the configuration.
+	 * The value is split once, when the handle is created.
+	 *
+	 * @param property  the property name
+	 * @param separator the separator that delimits individual values associated with the property.
+	 *
+	 * @return a handle to the list of values associated with the given property
+	 *
+	 * @throws IllegalConfigurationException if the property is not present in the configuration.
+	 */
+	public final PropertyHandle<List<String>> listHandle(String property, String separator) throws IllegalConfigurationException {
+		return new PropertyHandle<List<String>>(property, Collections.unmodifiableList(getList(property, separator)));
+	}
+
+	/**
+	 * Returns a handle to the file whose path is associated with a property in the configuration. The path is read and
+	 * the file validated only once, when the handle is created. Refer to
+	 * {@link #getFile(String, boolean, boolean, boolean, boolean, String...)} for details about the validations
+	 * performed.
+	 *
+	 * @param property      name of a property whose value is expected to contain a path to a file
+	 * @param mandatory     flag indicating whether the path is mandatory.
+	 * @param validateRead  flag indicating whether the file must have read permissions.
+	 * @param validateWrite flag indicating whether the file must have write permissions.
+	 * @param create        flag indicating whether the file must be created if it doesn't exist.
+	 *
+	 * @return a handle to the validated file represented by the given path.
+	 *
+	 * @throws IllegalConfigurationException if a validation fails
+	 */
+	public final PropertyHandle<File> fileHandle(String property, boolean mandatory, boolean validateRead, boolean validateWrite, boolean create) throws IllegalConfigurationException {
+		return new PropertyHandle<File>(property, getFile(property, mandatory, validateRead, validateWrite, create));
+	}
+
+	/**
+	 * Returns a handle to the directory whose path is associated with a property in the configuration. The path is
+	 * read and the directory validated only once, when the handle is created. Refer to
+	 * {@link #getDirectory(String, boolean, boolean, boolean, boolean, String...)} for details about the validations
+	 * performed.
+	 *
+	 * @param property      name of a property whose value is expected to contain a path to a directory
+	 * @param mandatory     flag indicating whether the path is mandatory.
+	 * @param validateRead  flag indicating whether the directory must have read permissions.
+	 * @param validateWrite flag indicating whether the directory must have write permissions.
+	 * @param create        flag indicating whether the directory must be created if it doesn't exist.
+	 *
+	 * @return a handle to the validated directory represented by the given path.
+	 *
+	 * @throws IllegalConfigurationException if a validation fails
+	 */
+	public final PropertyHandle<File> directoryHandle(String property, boolean mandatory, boolean validateRead, boolean validateWrite, boolean create) throws IllegalConfigurationException {
+		return new PropertyHandle<File>(property, getDirectory(property, mandatory, validateRead, validateWrite, create));
+	}
 }
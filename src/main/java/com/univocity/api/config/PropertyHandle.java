@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2013 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ */
+
+package com.univocity.api.config;
+
+/**
+ * A typed handle to the value of a property of a {@link PropertyBasedConfiguration}. The value is parsed, converted
+ * and validated only once, when the handle is obtained from the configuration, so that code that reads the same
+ * property over and over (e.g. in request handlers) doesn't need to parse strings or validate files every time.
+ *
+ * Handles are immutable and can be shared among threads. Obtain them with methods such as
+ * {@link PropertyBasedConfiguration#integerHandle(String)}, {@link PropertyBasedConfiguration#listHandle(String)} or
+ * {@link PropertyBasedConfiguration#fileHandle(String, boolean, boolean, boolean, boolean)}.
+ *
+ * @param <T> the type of value associated with the property
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com</a>
+ */
+public final class PropertyHandle<T> {
+
+	private final String property;
+	private final T value;
+
+	PropertyHandle(String property, T value) {
+		this.property = property;
+		this.value = value;
+	}
+
+	/**
+	 * Returns the name of the property whose value is held by this handle.
+	 *
+	 * @return the property name
+	 */
+	public String getProperty() {
+		return property;
+	}
+
+	/**
+	 * Returns the value of the property, converted when this handle was created.
+	 *
+	 * @return the property value. Might be {@code null} if the property has no value and no default was given.
+	 */
+	public T get() {
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return property + "=" + value;
+	}
+}
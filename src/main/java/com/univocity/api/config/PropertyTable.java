@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2013 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ */
+
+package com.univocity.api.config;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * A compact hash table that keeps its entries in insertion order. Keys and values are stored side by side in two
+ * arrays, in the order they were added, and an open-addressed {@code int} index (with linear probing) maps
+ * hashes to positions in these arrays. This avoids allocating an entry object per property, as {@link java.util.Hashtable}
+ * and {@link java.util.LinkedHashMap} do.
+ *
+ * As in {@link OrderedProperties}, putting a value for a key that already exists moves the key to the end of the
+ * sequence. Removed entries leave a gap in the arrays, which is discarded when the table is resized, so removal
+ * takes constant time.
+ *
+ * Modifications are serialized by locking on the table itself, while reads never lock: arrays are only updated
+ * through atomic operations, and a resize builds a new set of arrays which is then published at once. Readers
+ * always observe either the previous or the new value of a key, never a missing key, and {@link Cursor}s iterate
+ * over the arrays that were current when they were created.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com</a>
+ */
+final class PropertyTable {
+
+	private static final int EMPTY = 0;
+	private static final int DELETED = -1;
+
+	private volatile State state;
+	private volatile int size;
+
+	PropertyTable() {
+		this(16);
+	}
+
+	PropertyTable(int expectedSize) {
+		int capacity = 8;
+		while (capacity < expectedSize) {
+			capacity <<= 1;
+		}
+		state = new State(capacity);
+	}
+
+	private static final class State {
+		final AtomicReferenceArray<Object> keys;
+		final AtomicReferenceArray<Object> values;
+		final AtomicIntegerArray index;
+		final AtomicIntegerArray movedFrom;
+		volatile int count;
+
+		State(int capacity) {
+			keys = new AtomicReferenceArray<Object>(capacity);
+			values = new AtomicReferenceArray<Object>(capacity);
+			index = new AtomicIntegerArray(capacity << 1);
+			movedFrom = new AtomicIntegerArray(capacity);
+		}
+
+		/**
+		 * Finds the slot of the index that points to the position of a given key.
+		 *
+		 * @return the slot of the key in the index, or {@code -1} if the key is not present.
+		 */
+		int findSlot(Object key) {
+			int mask = index.length() - 1;
+			int slot = hash(key) & mask;
+			while (true) {
+				int entry = index.get(slot);
+				if (entry == EMPTY) {
+					return -1;
+				}
+				if (entry != DELETED) {
+					Object k = keys.get(entry - 1);
+					if (k == null) {
+						//entry discarded by a concurrent modification: reads the slot again
+						continue;
+					}
+					if (k == key || k.equals(key)) {
+						return slot;
+					}
+				}
+				slot = (slot + 1) & mask;
+			}
+		}
+
+		void insert(Object key, int position) {
+			int mask = index.length() - 1;
+			int slot = hash(key) & mask;
+			while (index.get(slot) > 0) {
+				slot = (slot + 1) & mask;
+			}
+			index.set(slot, position + 1);
+		}
+
+		void append(Object key, Object value) {
+			keys.set(count, key);
+			values.set(count, value);
+			count++;
+		}
+	}
+
+	private static int hash(Object key) {
+		int h = key.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean containsKey(Object key) {
+		return key != null && state.findSlot(key) != -1;
+	}
+
+	Object get(Object key) {
+		if (key == null) {
+			return null;
+		}
+		while (true) {
+			State state = this.state;
+			int slot = state.findSlot(key);
+			if (slot == -1) {
+				return null;
+			}
+			int entry = state.index.get(slot);
+			if (entry > 0) {
+				Object value = state.values.get(entry - 1);
+				if (value != null || state.keys.get(entry - 1) != null) {
+					return value;
+				}
+			}
+			//entry changed concurrently, try again
+		}
+	}
+
+	/**
+	 * Associates a value to a key. If the key already exists, it is moved to the end of the sequence.
+	 *
+	 * @return the previous value associated with the key, if any.
+	 */
+	synchronized Object put(Object key, Object value) {
+		State state = this.state;
+		if (state.count == state.keys.length()) {
+			state = resize();
+		}
+
+		int position = state.count;
+		int slot = state.findSlot(key);
+		if (slot == -1) {
+			state.append(key, value);
+			state.insert(key, position);
+			size++;
+			return null;
+		}
+
+		//existing key: appends it, points the index to the new position, then discards the previous entry.
+		int previousPosition = state.index.get(slot) - 1;
+		Object previous = state.values.get(previousPosition);
+		state.movedFrom.set(position, previousPosition + 1);
+		state.append(key, value);
+		state.index.set(slot, position + 1);
+		state.keys.set(previousPosition, null);
+		state.values.set(previousPosition, null);
+		return previous;
+	}
+
+	synchronized Object remove(Object key) {
+		if (key == null) {
+			return null;
+		}
+		State state = this.state;
+		int slot = state.findSlot(key);
+		if (slot == -1) {
+			return null;
+		}
+		int position = state.index.get(slot) - 1;
+		Object previous = state.values.get(position);
+		state.index.set(slot, DELETED);
+		state.keys.set(position, null);
+		state.values.set(position, null);
+		size--;
+		return previous;
+	}
+
+	synchronized void clear() {
+		state = new State(8);
+		size = 0;
+	}
+
+	/**
+	 * Resizes the table, discarding gaps left by removed entries. The table only grows if it is at least half full.
+	 * The new arrays are published only after they are fully populated.
+	 */
+	private State resize() {
+		State old = this.state;
+		int capacity = old.keys.length();
+		if (size >= (capacity >> 1)) {
+			capacity <<= 1;
+		}
+
+		State state = new State(capacity);
+		for (int i = 0; i < old.count; i++) {
+			Object key = old.keys.get(i);
+			if (key != null) {
+				state.insert(key, state.count);
+				state.append(key, old.values.get(i));
+			}
+		}
+		this.state = state;
+		return state;
+	}
+
+	/**
+	 * Returns a cursor over the entries of this table, in insertion order. The cursor is weakly consistent: it returns
+	 * every key that exists when it is created and is not removed while iterating, exactly once, and may or may not
+	 * return keys added afterwards. Keys moved to the end of the sequence while iterating are returned either at
+	 * their original position or at their new position.
+	 *
+	 * @return a new cursor, positioned before the first entry.
+	 */
+	Cursor cursor() {
+		return new Cursor(state);
+	}
+
+	/**
+	 * Iterates over the entries of a {@link PropertyTable}, in insertion order.
+	 */
+	static final class Cursor {
+		private final State state;
+		private final int start;
+		private int position = -1;
+		private long[] skipped;
+		private Object key;
+		private Object value;
+
+		private Cursor(State state) {
+			this.state = state;
+			this.start = state.count;
+		}
+
+		/**
+		 * Moves to the next entry.
+		 *
+		 * @return {@code true} if there is an entry at the new position, or {@code false} if there are no more entries.
+		 */
+		boolean next() {
+			while (++position < state.count) {
+				Object k = state.keys.get(position);
+				if (position >= start) {
+					int from = state.movedFrom.get(position) - 1;
+					if (from >= 0 && !isSkipped(from)) {
+						//key moved here after being returned from its previous position
+						continue;
+					}
+				}
+				if (k != null) {
+					Object v = state.values.get(position);
+					int slot = state.findSlot(k);
+					if (slot != -1 && state.index.get(slot) == position + 1) {
+						key = k;
+						value = v;
+						return true;
+					}
+				}
+				//entry discarded or moved: if moved, the key will be returned from its new position.
+				skip(position);
+			}
+			key = null;
+			value = null;
+			return false;
+		}
+
+		private void skip(int position) {
+			if (skipped == null) {
+				skipped = new long[(state.keys.length() + 63) >>> 6];
+			}
+			skipped[position >>> 6] |= 1L << position;
+		}
+
+		private boolean isSkipped(int position) {
+			return skipped != null && (skipped[position >>> 6] & (1L << position)) != 0;
+		}
+
+		Object key() {
+			return key;
+		}
+
+		Object value() {
+			return value;
+		}
+	}
+}
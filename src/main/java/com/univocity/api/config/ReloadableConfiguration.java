@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2013 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ */
+
+package com.univocity.api.config;
+
+import com.univocity.api.common.*;
+import com.univocity.api.exception.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A {@link PropertyBasedConfiguration} loaded from a file that can be reloaded when the file changes, without
+ * restarting the application.
+ *
+ * Each load produces a new {@link PropertyBasedConfiguration} that is never modified afterwards. Once loaded, it
+ * replaces the previous configuration atomically: readers simply call {@link #getConfiguration()} and never lock,
+ * always obtaining a fully resolved configuration. If the file can't be loaded (e.g. it is being written to, or a
+ * variable can't be resolved), the current configuration is kept.
+ *
+ * Call {@link #startWatching(long)} to check the file for changes periodically in a background (daemon) thread, and
+ * use {@link #addListener(String, ConfigurationChangeListener)} to be notified when properties that start with a
+ * given prefix change.
+ *
+ * {@link PropertyHandle}s obtained from a configuration keep the values of that configuration. Obtain them again
+ * from a listener to use values of the reloaded configuration.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com</a>
+ * @see ConfigurationChangeListener
+ */
+public class ReloadableConfiguration {
+
+	/**
+	 * The coarsest resolution of file modification times among common filesystems (FAT stores them in 2 seconds).
+	 */
+	private static final long MODIFICATION_TIME_RESOLUTION = 2000L;
+
+	private final File file;
+	private final Object reloadLock = new Object();
+	private final List<Registration> listeners = new CopyOnWriteArrayList<Registration>();
+
+	private volatile PropertyBasedConfiguration configuration;
+	private volatile Exception lastReloadError;
+	private long lastModified;
+	private long length;
+	private long checksum;
+	private long verifiedAt;
+
+	private Thread watcher;
+
+	/**
+	 * Creates a reloadable configuration from a file with properties. The file is loaded immediately.
+	 *
+	 * @param file the file with properties
+	 *
+	 * @throws IllegalConfigurationException if the file can't be loaded.
+	 */
+	public ReloadableConfiguration(File file) throws IllegalConfigurationException {
+		Args.notNull(file, "Properties file");
+		this.file = file;
+		synchronized (reloadLock) {
+			this.verifiedAt = System.currentTimeMillis();
+			this.lastModified = file.lastModified();
+			this.length = file.length();
+			this.checksum = checksum(file);
+			this.configuration = load(file);
+		}
+	}
+
+	/**
+	 * Loads the configuration from the given file. Override to load a subclass of {@link PropertyBasedConfiguration}.
+	 *
+	 * @param file the file with properties
+	 *
+	 * @return the configuration loaded from the file.
+	 *
+	 * @throws IllegalConfigurationException if the file can't be loaded.
+	 */
+	protected PropertyBasedConfiguration load(File file) throws IllegalConfigurationException {
+		return new PropertyBasedConfiguration(file);
+	}
+
+	/**
+	 * Returns the current configuration. The returned object is never modified: reloads produce new instances.
+	 *
+	 * @return the current configuration
+	 */
+	public final PropertyBasedConfiguration getConfiguration() {
+		return configuration;
+	}
+
+	/**
+	 * Returns the file with properties loaded by this configuration.
+	 *
+	 * @return the properties file
+	 */
+	public final File getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns the error that prevented the last reload from the background thread started with
+	 * {@link #startWatching(long)}, if any.
+	 *
+	 * @return the error of the last reload attempt, or {@code null} if it succeeded.
+	 */
+	public final Exception getLastReloadError() {
+		return lastReloadError;
+	}
+
+	/**
+	 * Registers a listener to be notified when properties whose names start with a given prefix change.
+	 *
+	 * @param prefix   the prefix of the properties of interest, e.g. {@code "db."}. Use an empty {@code String}
+	 *                 to be notified of changes in any property.
+	 * @param listener the listener to notify
+	 */
+	public final void addListener(String prefix, ConfigurationChangeListener listener) {
+		Args.notNull(prefix, "Property prefix");
+		Args.notNull(listener, "Configuration change listener");
+		listeners.add(new Registration(prefix, listener));
+	}
+
+	/**
+	 * Removes a listener from all prefixes it has been registered for.
+	 *
+	 * @param listener the listener to remove
+	 */
+	public final void removeListener(ConfigurationChangeListener listener) {
+		for (Registration registration : listeners) {
+			if (registration.listener == listener) {
+				listeners.remove(registration);
+			}
+		}
+	}
+
+	/**
+	 * Reloads the configuration if the file was modified since it was last loaded, i.e. if its last modification
+	 * time, its length or its contents changed. Contents are only compared while the last modification time is too
+	 * close to the last time the contents were verified to reveal changes made after it, e.g. when the file is
+	 * edited again within the same second.
+	 *
+	 * @return {@code true} if any property changed after the reload, otherwise {@code false}
+	 *
+	 * @throws IllegalConfigurationException if the file can't be loaded. The current configuration is kept.
+	 */
+	public final boolean reloadIfModified() throws IllegalConfigurationException {
+		synchronized (reloadLock) {
+			long modified = file.lastModified();
+			if (modified != lastModified || file.length() != length) {
+				return reload();
+			}
+			if (modified + MODIFICATION_TIME_RESOLUTION < verifiedAt) {
+				return false;
+			}
+			long now = System.currentTimeMillis();
+			if (checksum(file) == checksum) {
+				verifiedAt = now;
+				return false;
+			}
+			return reload();
+		}
+	}
+
+	/**
+	 * Reloads the configuration from the file, replaces the current configuration and notifies listeners of any
+	 * properties that changed. Listeners are notified in the thread that performs the reload, after the new
+	 * configuration is in use.
+	 *
+	 * @return {@code true} if any property changed after the reload, otherwise {@code false}
+	 *
+	 * @throws IllegalConfigurationException if the file can't be loaded. The current configuration is kept.
+	 */
+	public final boolean reload() throws IllegalConfigurationException {
+		synchronized (reloadLock) {
+			long now = System.currentTimeMillis();
+			long modified = file.lastModified();
+			long size = file.length();
+			long crc = checksum(file);
+
+			PropertyBasedConfiguration current = load(file);
+			PropertyBasedConfiguration previous = configuration;
+			configuration = current;
+			lastModified = modified;
+			length = size;
+			checksum = crc;
+			verifiedAt = now;
+
+			Set<String> changes = getChangedProperties(previous.getValues(), current.getValues());
+			if (changes.isEmpty()) {
+				return false;
+			}
+			notifyListeners(current, changes);
+			return true;
+		}
+	}
+
+	private static long checksum(File file) throws IllegalConfigurationException {
+		try {
+			return PropertiesFileLoader.checksum(PropertiesFileLoader.read(file));
+		} catch (IOException e) {
+			throw new IllegalConfigurationException("Error reading properties file " + file.getAbsolutePath(), e);
+		}
+	}
+
+	private static Set<String> getChangedProperties(Map<String, String> previous, Map<String, String> current) {
+		Set<String> changes = new TreeSet<String>();
+		for (Map.Entry<String, String> e : current.entrySet()) {
+			String key = e.getKey();
+			String value = e.getValue();
+			String oldValue = previous.get(key);
+			if (!previous.containsKey(key) || (value == null ? oldValue != null : !value.equals(oldValue))) {
+				changes.add(key);
+			}
+		}
+		for (String key : previous.keySet()) {
+			if (!current.containsKey(key)) {
+				changes.add(key);
+			}
+		}
+		return changes;
+	}
+
+	private void notifyListeners(PropertyBasedConfiguration current, Set<String> changes) {
+		for (Registration registration : listeners) {
+			String prefix = registration.prefix;
+			Set<String> changesWithPrefix = prefix.isEmpty() ? changes : new TreeSet<String>();
+			if (!prefix.isEmpty()) {
+				for (String change : changes) {
+					if (change.startsWith(prefix)) {
+						changesWithPrefix.add(change);
+					}
+				}
+			}
+			if (!changesWithPrefix.isEmpty()) {
+				registration.listener.configurationChanged(current, Collections.unmodifiableSet(changesWithPrefix));
+			}
+		}
+	}
+
+	/**
+	 * Starts a background daemon thread that checks the file for changes periodically, and reloads the configuration
+	 * when the file is modified. Does nothing if the file is already being watched.
+	 *
+	 * @param pollingInterval the interval between checks, in milliseconds.
+	 */
+	public final synchronized void startWatching(final long pollingInterval) {
+		if (pollingInterval <= 0) {
+			throw new IllegalArgumentException("Polling interval must be positive. Got " + pollingInterval);
+		}
+		if (watcher != null) {
+			return;
+		}
+		watcher = new Thread("Configuration watcher for " + file.getName()) {
+			@Override
+			public void run() {
+				while (!isInterrupted()) {
+					try {
+						Thread.sleep(pollingInterval);
+					} catch (InterruptedException e) {
+						return;
+					}
+					try {
+						reloadIfModified();
+						lastReloadError = null;
+					} catch (Exception e) {
+						lastReloadError = e;
+					}
+				}
+			}
+		};
+		watcher.setDaemon(true);
+		watcher.start();
+	}
+
+	/**
+	 * Stops the background thread started with {@link #startWatching(long)}, if any.
+	 */
+	public final synchronized void stopWatching() {
+		if (watcher != null) {
+			watcher.interrupt();
+			watcher = null;
+		}
+	}
+
+	/**
+	 * Tests whether the file is being watched for changes by a background thread.
+	 *
+	 * @return {@code true} if {@link #startWatching(long)} was called and the thread hasn't been stopped.
+	 */
+	public final synchronized boolean isWatching() {
+		return watcher != null;
+	}
+
+	private static final class Registration {
+		final String prefix;
+		final ConfigurationChangeListener listener;
+
+		Registration(String prefix, ConfigurationChangeListener listener) {
+			this.prefix = prefix;
+			this.listener = listener;
+		}
+	}
+}
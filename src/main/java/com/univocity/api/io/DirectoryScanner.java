@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2013 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ */
+
+package com.univocity.api.io;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.regex.*;
+
+/**
+ * Enumerates the files of a directory whose names match a pattern, one at a time, in alphabetical order. Only the
+ * names of the directories being visited are held in memory, so directories with very large numbers of files can be
+ * processed by an {@link InputFileQueue} without listing all files up front. Groups captured by the pattern from
+ * each file name are made available as variables of the file. When scanning recursively, directories that resolve
+ * (e.g. through symbolic links) to a directory already being visited are skipped, so link cycles are not followed.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com</a>
+ * @see InputFileQueue#addDirectory(File, Pattern, boolean, Charset, String...)
+ */
+final class DirectoryScanner implements InputQueue.InputEnumeration<FileProvider> {
+
+	private final Pattern fileNamePattern;
+	private final boolean recursive;
+	private final Charset encoding;
+	private final String[] groupVariables;
+
+	private final LinkedList<Listing> listings = new LinkedList<Listing>();
+	private Map<String, Object> variables;
+
+	DirectoryScanner(File directory, Pattern fileNamePattern, boolean recursive, Charset encoding, String... groupVariables) {
+		if (directory == null) {
+			throw new IllegalArgumentException("Directory cannot be null");
+		}
+		if (!directory.isDirectory()) {
+			throw new IllegalArgumentException("Directory '" + directory.getAbsolutePath() + "' does not exist");
+		}
+		if (fileNamePattern == null) {
+			throw new IllegalArgumentException("File name pattern cannot be null");
+		}
+		if (groupVariables == null) {
+			groupVariables = new String[0];
+		}
+		int groups = fileNamePattern.matcher("").groupCount();
+		if (groupVariables.length > groups) {
+			throw new IllegalArgumentException("Can't assign " + groupVariables.length + " variables " + Arrays.toString(groupVariables) + " from file name pattern '" + fileNamePattern.pattern() + "'. Pattern has " + groups + " capturing group(s)");
+		}
+		for (String variable : groupVariables) {
+			if (variable == null) {
+				throw new IllegalArgumentException("Variable names cannot be null");
+			}
+		}
+		this.fileNamePattern = fileNamePattern;
+		this.recursive = recursive;
+		this.encoding = encoding;
+		this.groupVariables = groupVariables;
+		this.listings.push(new Listing(directory, canonicalPath(directory)));
+	}
+
+	/**
+	 * Converts a glob expression into a pattern. Each {@code *} (any sequence of characters) and {@code ?} (any single
+	 * character) becomes a capturing group, so the text matched by each wildcard can be assigned to a variable.
+	 *
+	 * @param glob the glob expression to match file names, such as {@code sales_*_*.csv}
+	 *
+	 * @return a pattern equivalent to the given glob expression.
+	 */
+	static Pattern globToPattern(String glob) {
+		if (glob == null) {
+			throw new IllegalArgumentException("Glob expression cannot be null");
+		}
+		StringBuilder out = new StringBuilder(glob.length() + 16);
+		int literalStart = 0;
+		for (int i = 0; i < glob.length(); i++) {
+			char ch = glob.charAt(i);
+			if (ch == '*' || ch == '?') {
+				if (literalStart < i) {
+					out.append(Pattern.quote(glob.substring(literalStart, i)));
+				}
+				out.append(ch == '*' ? "(.*)" : "(.)");
+				literalStart = i + 1;
+			}
+		}
+		if (literalStart < glob.length()) {
+			out.append(Pattern.quote(glob.substring(literalStart)));
+		}
+		return Pattern.compile(out.toString());
+	}
+
+	@Override
+	public FileProvider nextInput() {
+		variables = null;
+		while (!listings.isEmpty()) {
+			Listing listing = listings.peek();
+			if (listing.position >= listing.names.length) {
+				listings.pop();
+				continue;
+			}
+			File file = new File(listing.directory, listing.names[listing.position++]);
+			if (file.isDirectory()) {
+				if (recursive) {
+					String path = canonicalPath(file);
+					if (!isBeingVisited(path)) {
+						listings.push(new Listing(file, path));
+					}
+				}
+				continue;
+			}
+			Matcher matcher = fileNamePattern.matcher(file.getName());
+			if (matcher.matches()) {
+				if (groupVariables.length > 0) {
+					variables = new HashMap<String, Object>(groupVariables.length * 2);
+					for (int i = 0; i < groupVariables.length; i++) {
+						variables.put(groupVariables[i], matcher.group(i + 1));
+					}
+				}
+				return new FileProvider(file, encoding);
+			}
+		}
+		return null;
+	}
+
+	private boolean isBeingVisited(String canonicalPath) {
+		for (Listing listing : listings) {
+			if (listing.canonicalPath.equals(canonicalPath)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String canonicalPath(File directory) {
+		try {
+			return directory.getCanonicalPath();
+		} catch (IOException e) {
+			return directory.getAbsolutePath();
+		}
+	}
+
+	@Override
+	public Map<String, Object> getVariables() {
+		return variables;
+	}
+
+	private static final class Listing {
+		final File directory;
+		final String canonicalPath;
+		final String[] names;
+		int position;
+
+		Listing(File directory, String canonicalPath) {
+			this.directory = directory;
+			this.canonicalPath = canonicalPath;
+			String[] names = directory.list();
+			if (names == null) {
+				//directory removed or not readable
+				names = new String[0];
+			}
+			Arrays.sort(names);
+			this.names = names;
+		}
+	}
+}
@@ -22,6 +22,7 @@ public final class FileProvider {
 	private final File file;
 	private final Charset encoding;
 	private final String filePath;
+	private boolean memoryMapped;
 
 	/**
 	 * Creates a provider for the file to be read/written using the default system encoding.
@@ -86,7 +87,7 @@ public final class FileProvider {
 	 * @param encoding the encoding that must be used to read from/write to the given file.
 	 */
 	public FileProvider(String filePath, Charset encoding) {
-		if (filePath == null || filePath.trim().isEmpty()) {
+		if (Args.isBlank(filePath)) {
 			throw new IllegalArgumentException("File path cannot be null or empty");
 		}
 		this.encoding = getEncoding(encoding);
@@ -135,6 +136,51 @@ public final class FileProvider {
 		return filePath;
 	}
 
+	/**
+	 * Defines whether the file should be read from memory-mapped regions of the file, instead of being read through
+	 * a stream. Memory-mapped reading avoids copying the contents of the file through intermediate buffers, and
+	 * decodes files encoded in ISO-8859-1, US-ASCII and UTF-8 with a faster path for single-byte characters. It
+	 * pays off for large files; small files are usually read faster through a stream.
+	 *
+	 * Only files in the file system can be memory-mapped. Resources in the classpath are read through a stream.
+	 *
+	 * @param memoryMapped flag indicating whether the file should be memory-mapped when read.
+	 *
+	 * @see #openMappedReader()
+	 */
+	public final void setMemoryMapped(boolean memoryMapped) {
+		this.memoryMapped = memoryMapped;
+	}
+
+	/**
+	 * Returns whether the file should be read from memory-mapped regions of the file, instead of being read through a
+	 * stream.
+	 *
+	 * @return {@code true} if the file is to be memory-mapped when read.
+	 */
+	public final boolean isMemoryMapped() {
+		return memoryMapped;
+	}
+
+	/**
+	 * Opens a {@link Reader} backed by memory-mapped regions of the file, decoded with the encoding of this provider.
+	 *
+	 * @return a reader of the file contents
+	 *
+	 * @throws IllegalStateException if the file is not in the file system or can't be opened.
+	 */
+	public final Reader openMappedReader() {
+		File target = file != null ? file : new File(filePath);
+		if (!target.isFile()) {
+			throw new IllegalStateException("Can't memory-map " + filePath + ". File does not exist in the file system.");
+		}
+		try {
+			return new MappedFileReader(target, encoding, MappedFileReader.DEFAULT_WINDOW_SIZE);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to open " + filePath, e);
+		}
+	}
+
 	@Override
 	public final String toString() {
 		return filePath + " (" + encoding + ")";
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2013 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ */
+
+package com.univocity.api.io;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Schedules the files of an {@link InputFileQueue} according to a {@link FileSchedulingPolicy}.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com</a>
+ */
+final class FileScheduler implements InputQueue.InputScheduler<FileProvider> {
+
+	private final FileSchedulingPolicy policy;
+	private final Map<String, PriorityQueue<ScheduledFile>> directories;
+	private final LinkedList<PriorityQueue<ScheduledFile>> rotation;
+	private final PriorityQueue<ScheduledFile> files;
+	private long sequence;
+	private int size;
+
+	private static final Comparator<ScheduledFile> INSERTION_ORDER = new Comparator<ScheduledFile>() {
+		@Override
+		public int compare(ScheduledFile o1, ScheduledFile o2) {
+			return o1.sequence < o2.sequence ? -1 : (o1.sequence == o2.sequence ? 0 : 1);
+		}
+	};
+
+	FileScheduler(FileSchedulingPolicy policy) {
+		this.policy = policy;
+		if (policy == FileSchedulingPolicy.ROUND_ROBIN_BY_DIRECTORY) {
+			directories = new HashMap<String, PriorityQueue<ScheduledFile>>();
+			rotation = new LinkedList<PriorityQueue<ScheduledFile>>();
+			files = null;
+		} else {
+			directories = null;
+			rotation = null;
+			files = new PriorityQueue<ScheduledFile>();
+		}
+	}
+
+	@Override
+	public void add(FileProvider input) {
+		//providers created from a path (e.g. a classpath resource) have no File
+		File file = input.getFile() != null ? input.getFile() : new File(input.getFilePath());
+		long length = file.isFile() ? file.length() : 0L;
+		String directory = files != null ? null : file.getAbsoluteFile().getParent();
+		ScheduledFile scheduled = new ScheduledFile(input, length, directory, sequence++, policy != FileSchedulingPolicy.SMALLEST_FIRST);
+		if (files != null) {
+			files.add(scheduled);
+		} else {
+			PriorityQueue<ScheduledFile> queue = directories.get(directory);
+			if (queue == null) {
+				queue = new PriorityQueue<ScheduledFile>();
+				directories.put(directory, queue);
+				rotation.add(queue);
+			}
+			queue.add(scheduled);
+		}
+		size++;
+	}
+
+	@Override
+	public FileProvider peek() {
+		PriorityQueue<ScheduledFile> queue = files != null ? files : rotation.peek();
+		if (queue == null || queue.isEmpty()) {
+			return null;
+		}
+		return queue.peek().input;
+	}
+
+	@Override
+	public FileProvider poll() {
+		ScheduledFile next;
+		if (files != null) {
+			next = files.poll();
+		} else {
+			PriorityQueue<ScheduledFile> queue = rotation.poll();
+			if (queue == null) {
+				return null;
+			}
+			next = queue.poll();
+			if (queue.isEmpty()) {
+				directories.remove(next.directory);
+			} else {
+				rotation.add(queue);
+			}
+		}
+		if (next == null) {
+			return null;
+		}
+		size--;
+		return next.input;
+	}
+
+	@Override
+	public List<FileProvider> removeAll() {
+		List<ScheduledFile> scheduled = new ArrayList<ScheduledFile>(size);
+		if (files != null) {
+			scheduled.addAll(files);
+			files.clear();
+		} else {
+			for (PriorityQueue<ScheduledFile> queue : rotation) {
+				scheduled.addAll(queue);
+			}
+			rotation.clear();
+			directories.clear();
+		}
+		Collections.sort(scheduled, INSERTION_ORDER);
+
+		List<FileProvider> out = new ArrayList<FileProvider>(scheduled.size());
+		for (ScheduledFile file : scheduled) {
+			out.add(file.input);
+		}
+		size = 0;
+		return out;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	private static final class ScheduledFile implements Comparable<ScheduledFile> {
+		final FileProvider input;
+		final long length;
+		final String directory;
+		final long sequence;
+		final boolean largestFirst;
+
+		ScheduledFile(FileProvider input, long length, String directory, long sequence, boolean largestFirst) {
+			this.input = input;
+			this.length = length;
+			this.directory = directory;
+			this.sequence = sequence;
+			this.largestFirst = largestFirst;
+		}
+
+		@Override
+		public int compareTo(ScheduledFile o) {
+			if (length != o.length) {
+				return (length < o.length) == largestFirst ? 1 : -1;
+			}
+			return sequence < o.sequence ? -1 : (sequence == o.sequence ? 0 : 1);
+		}
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2013 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ */
+
+package com.univocity.api.io;
+
+/**
+ * The order in which the files of an {@link InputFileQueue} are processed. Policies other than
+ * {@link #INSERTION_ORDER} are based on the length of each file, which is obtained only once, when the file is
+ * scheduled.
+ *
+ * When a queue is consumed by multiple threads, processing the largest files first avoids leaving a single large file
+ * to be processed by one thread at the end, while the others sit idle.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com</a>
+ * @see InputFileQueue#setSchedulingPolicy(FileSchedulingPolicy)
+ */
+public enum FileSchedulingPolicy {
+
+	/**
+	 * Files are processed in the order they were added to the queue.
+	 */
+	INSERTION_ORDER,
+
+	/**
+	 * Larger files are processed first. Files of the same length are processed in the order they were added.
+	 */
+	LARGEST_FIRST,
+
+	/**
+	 * Smaller files are processed first. Files of the same length are processed in the order they were added.
+	 */
+	SMALLEST_FIRST,
+
+	/**
+	 * Files are taken from each directory in turn, so that reads are spread across directories (which are commonly
+	 * mapped to different disks or network shares). Within a directory, larger files are processed first.
+	 */
+	ROUND_ROBIN_BY_DIRECTORY
+}
@@ -11,6 +11,7 @@ import com.univocity.api.*;
 
 import java.io.*;
 import java.nio.charset.*;
+import java.util.regex.*;
 
 /**
  * A queue of a sequence of files to be processed.
@@ -23,6 +24,13 @@ import java.nio.charset.*;
  */
 public class InputFileQueue extends InputQueue<FileProvider> {
 
+	/**
+	 * The number of files a {@link FileSchedulingPolicy} chooses the next file from, by default.
+	 */
+	public static final int DEFAULT_SCHEDULING_WINDOW = 1024;
+
+	private volatile boolean memoryMapped;
+
 	/**
 	 * Adds a {@code java.io.File} to the queue. The default character encoding will be used to read this file.
 	 *
@@ -90,8 +98,107 @@ public class InputFileQueue extends InputQueue<FileProvider> {
 		offer(fileProvider);
 	}
 
+	/**
+	 * Adds the files of a directory whose names match a glob expression to the queue. Files are enumerated in
+	 * alphabetical order as the queue is consumed, so directories with very large numbers of files can be processed
+	 * without listing all files up front.
+	 *
+	 * The text matched by each wildcard of the glob expression ({@code *} for any sequence of characters and {@code ?}
+	 * for any single character) can be assigned to a variable of each file. For example, files added with
+	 * {@code addDirectory(dir, "sales_*_*.csv", false, null, "region", "date")} have the variables
+	 * {@code region} and {@code date} assigned to the corresponding parts of their names.
+	 *
+	 * @param directory         the directory whose files will be added to this input queue.
+	 * @param glob              the glob expression file names must match.
+	 * @param recursive         flag indicating whether files in subdirectories should be added as well.
+	 * @param encoding          the encoding to be used when reading from each file. If {@code null} the default
+	 *                          character encoding will be used.
+	 * @param wildcardVariables the names of the variables to assign the text matched by each wildcard to, in order.
+	 */
+	public void addDirectory(File directory, String glob, boolean recursive, Charset encoding, String... wildcardVariables) {
+		addDirectory(directory, DirectoryScanner.globToPattern(glob), recursive, encoding, wildcardVariables);
+	}
+
+	/**
+	 * Adds the files of a directory whose names match a regular expression to the queue. Files are enumerated in
+	 * alphabetical order as the queue is consumed, so directories with very large numbers of files can be processed
+	 * without listing all files up front.
+	 *
+	 * The text captured by each group of the regular expression can be assigned to a variable of each file.
+	 *
+	 * @param directory       the directory whose files will be added to this input queue.
+	 * @param fileNamePattern the pattern file names must match.
+	 * @param recursive       flag indicating whether files in subdirectories should be added as well.
+	 * @param encoding        the encoding to be used when reading from each file. If {@code null} the default
+	 *                        character encoding will be used.
+	 * @param groupVariables  the names of the variables to assign the text captured by each group to, in order.
+	 */
+	public void addDirectory(File directory, Pattern fileNamePattern, boolean recursive, Charset encoding, String... groupVariables) {
+		offerAll(new DirectoryScanner(directory, fileNamePattern, recursive, encoding, groupVariables));
+	}
+
+	/**
+	 * Defines the order in which the files of this queue are processed. By default, files are processed in the order
+	 * they were added. Other policies use the length of each file to choose the next file to process, which helps
+	 * keeping all threads busy until the end when the queue is consumed in parallel with {@link #next()}.
+	 *
+	 * The policy is applied to the next {@value #DEFAULT_SCHEDULING_WINDOW} files of the queue, in insertion order.
+	 * Use {@link #setSchedulingPolicy(FileSchedulingPolicy, int)} to choose a different number of files.
+	 *
+	 * @param policy the scheduling policy to use. Files already waiting in the queue are rescheduled.
+	 */
+	public void setSchedulingPolicy(FileSchedulingPolicy policy) {
+		setSchedulingPolicy(policy, DEFAULT_SCHEDULING_WINDOW);
+	}
+
+	/**
+	 * Defines the order in which the files of this queue are processed. By default, files are processed in the order
+	 * they were added. Other policies use the length of each file to choose the next file to process, which helps
+	 * keeping all threads busy until the end when the queue is consumed in parallel with {@link #next()}.
+	 *
+	 * The policy chooses the next file from a window of files that moves along the queue: files of directories added
+	 * with {@code addDirectory} are enumerated as the window advances, so only {@code window} files need to be known
+	 * (and have their lengths read) at any time. Larger windows follow the policy more closely.
+	 *
+	 * @param policy the scheduling policy to use. Files already waiting in the queue are rescheduled.
+	 * @param window the number of files, in insertion order, the policy chooses the next file from.
+	 */
+	public void setSchedulingPolicy(FileSchedulingPolicy policy, int window) {
+		if (policy == null) {
+			throw new IllegalArgumentException("Scheduling policy cannot be null");
+		}
+		setScheduler(policy == FileSchedulingPolicy.INSERTION_ORDER ? null : new FileScheduler(policy), window);
+	}
+
+	/**
+	 * Defines whether all files of this queue should be read from memory-mapped regions of each file, regardless
+	 * of {@link FileProvider#isMemoryMapped()}. Files not in the file system are read through a stream.
+	 *
+	 * @param memoryMapped flag indicating whether files should be memory-mapped when read.
+	 *
+	 * @see FileProvider#setMemoryMapped(boolean)
+	 */
+	public void setMemoryMapped(boolean memoryMapped) {
+		this.memoryMapped = memoryMapped;
+	}
+
+	/**
+	 * Returns whether all files of this queue are read from memory-mapped regions of each file.
+	 *
+	 * @return {@code true} if files are memory-mapped when read.
+	 */
+	public boolean isMemoryMapped() {
+		return memoryMapped;
+	}
+
 	@Override
 	protected Reader open(FileProvider input) {
+		if (memoryMapped || input.isMemoryMapped()) {
+			File file = input.getFile() != null ? input.getFile() : new File(input.getFilePath());
+			if (file.isFile()) {
+				return input.openMappedReader();
+			}
+		}
 		return Builder.build(Reader.class, input);
 	}
 }
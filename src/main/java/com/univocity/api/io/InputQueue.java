@@ -8,6 +8,7 @@ package com.univocity.api.io;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * A queue of a sequence of inputs to be processed. Inputs can come in all sort of formats, but must be abstracted
@@ -15,6 +16,15 @@ import java.util.*;
  * information about what the input represents (e.g. date the input was produced, some user ID associated with the
  * input, etc)
  *
+ * Inputs are normally opened when {@link #getResource()} is called. If opening inputs is slow (e.g. files on slow
+ * disks, or remote resources), call {@link #enablePrefetching(ExecutorService, int, int)} to open and pre-buffer the
+ * next inputs in the background while the current input is being consumed.
+ *
+ * {@link #getResource()} and {@link #readVariable(String)} assume a single thread consumes the queue. To process
+ * inputs in parallel, worker threads should call {@link #next()} instead: each call claims the next input atomically
+ * and returns a {@link QueuedInput} with its {@link java.io.Reader} and its own variables. Inputs can be added to the
+ * queue while it is being consumed.
+ *
  * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com</a>
  * @see InputFileQueue
  * @see InputReaderQueue
@@ -23,10 +33,25 @@ public abstract class InputQueue<T> extends ReaderProvider {
 
 	private final Map<T, Map<String, Object>> variables = new HashMap<T, Map<String, Object>>();
 
-	private final Queue<T> inputQueue = new LinkedList<T>();
+	/**
+	 * Inputs to be processed: either single inputs, or {@link LazyInputs} enumerated on demand.
+	 */
+	private final LinkedList<PendingInputs<T>> inputQueue = new LinkedList<PendingInputs<T>>();
+
+	/**
+	 * Determines the order in which inputs are processed. Inputs are processed in insertion order if {@code null}.
+	 */
+	private InputScheduler<T> scheduler;
+	private int schedulingWindow;
 
 	private Map<String, Object> currentVariables = null;
-	private T lastEntry;
+	private T lastInput;
+	private boolean lastEntryEnumerated;
+
+	private ExecutorService prefetchExecutor;
+	private int inputsAhead;
+	private int prefetchBufferSize;
+	private final LinkedList<Prefetch<T>> prefetched = new LinkedList<Prefetch<T>>();
 
 	/**
 	 * Creates an empty queue.
@@ -41,16 +66,31 @@ public abstract class InputQueue<T> extends ReaderProvider {
 	 * @return {@code true} if there are no more inputs to be processed, otherwise {@code false}
 	 */
 	public final boolean isEmpty() {
-		return inputQueue.isEmpty();
+		synchronized (inputQueue) {
+			return prefetched.isEmpty() && head() == null;
+		}
 	}
 
 	/**
-	 * Returns the number of inputs to be processed that are waiting in the queue
+	 * Returns the number of inputs to be processed that are waiting in the queue. Inputs added with
+	 * {@link #offerAll(InputEnumeration)} are only counted once enumerated, so use {@link #isEmpty()} to determine
+	 * whether there are more inputs to process.
 	 *
 	 * @return the queue size
 	 */
 	public final int size() {
-		return inputQueue.size();
+		synchronized (inputQueue) {
+			int size = prefetched.size();
+			if (scheduler != null) {
+				size += scheduler.size();
+			}
+			for (PendingInputs<T> entry : inputQueue) {
+				if (entry.next != null) {
+					size++;
+				}
+			}
+			return size;
+		}
 	}
 
 	/**
@@ -58,7 +98,12 @@ public abstract class InputQueue<T> extends ReaderProvider {
 	 * @return the current input at the head of the queue.
 	 */
 	public final T peek(){
-		return inputQueue.peek();
+		synchronized (inputQueue) {
+			if (!prefetched.isEmpty()) {
+				return prefetched.getFirst().input;
+			}
+			return head();
+		}
 	}
 
 	/**
@@ -67,8 +112,229 @@ public abstract class InputQueue<T> extends ReaderProvider {
 	 * @param input the input to be processed
 	 */
 	protected final void offer(T input) {
-		inputQueue.offer(input);
-		this.lastEntry = input;
+		synchronized (inputQueue) {
+			inputQueue.offer(new PendingInputs<T>(input));
+			this.lastInput = input;
+			this.lastEntryEnumerated = false;
+		}
+	}
+
+	/**
+	 * Adds a sequence of inputs to be processed to the end of the queue. Inputs are only obtained from the given
+	 * {@link InputEnumeration} when they are about to be processed, so that large numbers of inputs don't need to be
+	 * held in memory. Variables can't be assigned to the inputs with {@link #assignVariableToLastEntry(String, Object)}:
+	 * the enumeration provides the variables of each input instead.
+	 *
+	 * @param inputs the inputs to be processed
+	 */
+	protected final void offerAll(InputEnumeration<? extends T> inputs) {
+		if (inputs == null) {
+			throw new IllegalArgumentException("Inputs cannot be null");
+		}
+		synchronized (inputQueue) {
+			inputQueue.offer(new LazyInputs<T>(inputs));
+			this.lastInput = null;
+			this.lastEntryEnumerated = true;
+		}
+	}
+
+	/**
+	 * Returns the input to be processed next, enumerating the next input of lazily enumerated inputs if required.
+	 */
+	private T head() {
+		if (scheduler != null) {
+			schedulePending();
+			return scheduler.peek();
+		}
+		PendingInputs<T> head = insertionHead();
+		return head == null ? null : head.next;
+	}
+
+	/**
+	 * Returns the entry at the head of the queue in insertion order, enumerating the next input of lazily enumerated
+	 * inputs if required. Exhausted entries are discarded.
+	 */
+	private PendingInputs<T> insertionHead() {
+		PendingInputs<T> head;
+		while ((head = inputQueue.peek()) != null) {
+			if (head.advance()) {
+				break;
+			}
+			inputQueue.poll();
+		}
+		return head;
+	}
+
+	/**
+	 * Removes the input at the head of the queue, and associates the variables provided by its enumeration, if any.
+	 */
+	private T pollInput() {
+		if (scheduler != null) {
+			schedulePending();
+			return scheduler.poll();
+		}
+		return dequeue();
+	}
+
+	/**
+	 * Moves the next inputs waiting in the queue, enumerating them if required, to the scheduler until it holds as
+	 * many inputs as the scheduling window allows.
+	 */
+	private void schedulePending() {
+		T input;
+		while (scheduler.size() < schedulingWindow && (input = dequeue()) != null) {
+			scheduler.add(input);
+		}
+	}
+
+	/**
+	 * Removes the input at the head of the queue in insertion order.
+	 */
+	private T dequeue() {
+		PendingInputs<T> head = insertionHead();
+		if (head == null) {
+			return null;
+		}
+		T input = head.next;
+		if (head.nextVariables != null) {
+			for (Map.Entry<String, Object> e : head.nextVariables.entrySet()) {
+				assignVariableToEntry(input, e.getKey(), e.getValue());
+			}
+		}
+		head.next = null;
+		head.nextVariables = null;
+		return input;
+	}
+
+	/**
+	 * Defines the order in which the inputs of this queue are processed. The given scheduler receives the next
+	 * {@code window} inputs waiting in the queue, in insertion order, and determines which one will be processed next.
+	 * Each time an input is dequeued, the scheduler receives the following input in insertion order, so inputs added
+	 * with {@link #offerAll(InputEnumeration)} are still enumerated on demand. Inputs already prefetched are not
+	 * rescheduled. Inputs waiting in a previous scheduler are given to the new scheduler in the order they were
+	 * originally added.
+	 *
+	 * @param scheduler the scheduler to use, or {@code null} to process inputs in insertion order.
+	 * @param window    the maximum number of inputs held by the scheduler to choose the next input from.
+	 */
+	protected final void setScheduler(InputScheduler<T> scheduler, int window) {
+		if (window <= 0) {
+			throw new IllegalArgumentException("Scheduling window must be positive. Got " + window);
+		}
+		synchronized (inputQueue) {
+			this.schedulingWindow = window;
+			if (this.scheduler != null) {
+				//scheduled inputs were all added before the inputs still waiting in insertion order.
+				List<T> scheduled = this.scheduler.removeAll();
+				for (int i = scheduled.size() - 1; i >= 0; i--) {
+					inputQueue.addFirst(new PendingInputs<T>(scheduled.get(i)));
+				}
+			}
+			this.scheduler = scheduler;
+		}
+	}
+
+	/**
+	 * Determines the order in which the inputs of a queue are processed. Used with
+	 * {@link #setScheduler(InputScheduler, int)}. Implementations don't need to be thread-safe: all calls are made
+	 * while holding the lock of the queue.
+	 *
+	 * @param <I> the type of input scheduled
+	 */
+	protected interface InputScheduler<I> {
+
+		/**
+		 * Adds an input to be scheduled.
+		 *
+		 * @param input the input waiting to be processed
+		 */
+		void add(I input);
+
+		/**
+		 * Returns the next input to process, without removing it from this scheduler.
+		 *
+		 * @return the next input, or {@code null} if there are no inputs waiting.
+		 */
+		I peek();
+
+		/**
+		 * Removes and returns the next input to process.
+		 *
+		 * @return the next input, or {@code null} if there are no inputs waiting.
+		 */
+		I poll();
+
+		/**
+		 * Removes all inputs waiting in this scheduler, e.g. when the queue switches to another scheduler.
+		 *
+		 * @return the inputs removed, in the order they were added to this scheduler.
+		 */
+		List<I> removeAll();
+
+		/**
+		 * Returns the number of inputs waiting in this scheduler.
+		 *
+		 * @return the number of inputs to be processed.
+		 */
+		int size();
+	}
+
+	/**
+	 * A sequence of inputs obtained on demand. Used with {@link #offerAll(InputEnumeration)} to add large numbers of
+	 * inputs to a queue without holding all of them in memory.
+	 *
+	 * @param <I> the type of input enumerated
+	 */
+	protected interface InputEnumeration<I> {
+
+		/**
+		 * Returns the next input of this enumeration.
+		 *
+		 * @return the next input, or {@code null} if there are no more inputs.
+		 */
+		I nextInput();
+
+		/**
+		 * Returns the variables associated with the input last returned by {@link #nextInput()}.
+		 *
+		 * @return the variables of the last input, or {@code null} if it has no variables.
+		 */
+		Map<String, Object> getVariables();
+	}
+
+	/**
+	 * An entry of the queue, holding the next input to process and the variables provided for it, if any. A single
+	 * input is exhausted once dequeued.
+	 */
+	private static class PendingInputs<I> {
+		I next;
+		Map<String, Object> nextVariables;
+
+		PendingInputs(I input) {
+			this.next = input;
+		}
+
+		boolean advance() {
+			return next != null;
+		}
+	}
+
+	private static final class LazyInputs<I> extends PendingInputs<I> {
+		final InputEnumeration<? extends I> inputs;
+
+		LazyInputs(InputEnumeration<? extends I> inputs) {
+			super(null);
+			this.inputs = inputs;
+		}
+
+		@Override
+		boolean advance() {
+			if (next == null) {
+				next = inputs.nextInput();
+				nextVariables = next == null ? null : inputs.getVariables();
+			}
+			return next != null;
+		}
 	}
 
 	/**
@@ -78,10 +344,15 @@ public abstract class InputQueue<T> extends ReaderProvider {
 	 * @param value    the value to associated to the given variable
 	 */
 	public void assignVariableToLastEntry(String variable, Object value) {
-		if (lastEntry == null) {
-			throw new IllegalArgumentException("Can't assign value '" + value + "' to variable '" + variable + "' bound to last entry of input queue. Input queue is empty.");
+		synchronized (inputQueue) {
+			if (lastEntryEnumerated) {
+				throw new IllegalArgumentException("Can't assign value '" + value + "' to variable '" + variable + "' bound to last entry of input queue. Last entry is a sequence of inputs enumerated on demand.");
+			}
+			if (lastInput == null) {
+				throw new IllegalArgumentException("Can't assign value '" + value + "' to variable '" + variable + "' bound to last entry of input queue. Input queue is empty.");
+			}
+			assignVariableToEntry(lastInput, variable, value);
 		}
-		assignVariableToEntry(lastEntry, variable, value);
 	}
 
 	/**
@@ -90,11 +361,16 @@ public abstract class InputQueue<T> extends ReaderProvider {
 	 * @param variables the variable and values associated to the last input to be processed in this input queue
 	 */
 	public void assignVariablesToLastEntry(Map<String, Object> variables) {
-		if (lastEntry == null) {
-			throw new IllegalArgumentException("Can't assign variables " + variables + " to last entry of input queue. Input queue is empty.");
-		}
-		for (Map.Entry<String, Object> e : variables.entrySet()) {
-			assignVariableToEntry(lastEntry, e.getKey(), e.getValue());
+		synchronized (inputQueue) {
+			if (lastEntryEnumerated) {
+				throw new IllegalArgumentException("Can't assign variables " + variables + " to last entry of input queue. Last entry is a sequence of inputs enumerated on demand.");
+			}
+			if (lastInput == null) {
+				throw new IllegalArgumentException("Can't assign variables " + variables + " to last entry of input queue. Input queue is empty.");
+			}
+			for (Map.Entry<String, Object> e : variables.entrySet()) {
+				assignVariableToEntry(lastInput, e.getKey(), e.getValue());
+			}
 		}
 	}
 
@@ -115,15 +391,159 @@ public abstract class InputQueue<T> extends ReaderProvider {
 	 */
 	@Override
 	public final Reader getResource() {
-		T input = inputQueue.poll();
+		Claim claim = claim();
 
-		if (input == null) {
+		if (claim == null) {
 			throw new IllegalStateException("No input to process");
 		}
 
-		currentVariables = variables.remove(input);
+		currentVariables = claim.variables;
 
-		return open(input);
+		return claim.open();
+	}
+
+	/**
+	 * Atomically claims the next input of the queue, opens it as an instanceof {@link java.io.Reader} with the help
+	 * of method {@link #open(Object)}, and returns it along with the variables associated with the input.
+	 *
+	 * This method can be called concurrently by multiple threads: each input is returned to a single caller, and
+	 * inputs are opened in the calling threads, in parallel. Unlike {@link #getResource()}, it doesn't change the
+	 * variables returned by {@link #readVariable(String)} and {@link #getCurrentVariables()}: variables must be read
+	 * from the returned {@link QueuedInput}.
+	 *
+	 * @return the next input of the queue, open for reading, or {@code null} if the queue is empty.
+	 */
+	public final QueuedInput<T> next() {
+		Claim claim = claim();
+		if (claim == null) {
+			return null;
+		}
+		return new QueuedInput<T>(claim.input, claim.open(), claim.variables);
+	}
+
+	private Claim claim() {
+		synchronized (inputQueue) {
+			if (prefetchExecutor != null) {
+				if (prefetched.isEmpty()) {
+					prefetch(1);
+				}
+				if (prefetched.isEmpty()) {
+					return null;
+				}
+				Prefetch<T> next = prefetched.removeFirst();
+				Claim claim = new Claim(next.input, variables.remove(next.input), next.reader);
+
+				//opens the following inputs while the current one is consumed.
+				prefetch(inputsAhead);
+				return claim;
+			}
+
+			T input = pollInput();
+			if (input == null) {
+				return null;
+			}
+			return new Claim(input, variables.remove(input), null);
+		}
+	}
+
+	/**
+	 * An input claimed from the queue, with its variables, which might have been opened in advance.
+	 */
+	private final class Claim {
+		final T input;
+		final Map<String, Object> variables;
+		final Future<Reader> reader;
+
+		Claim(T input, Map<String, Object> variables, Future<Reader> reader) {
+			this.input = input;
+			this.variables = variables;
+			this.reader = reader;
+		}
+
+		Reader open() {
+			if (reader == null) {
+				return InputQueue.this.open(input);
+			}
+			try {
+				return reader.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Thread interrupted while opening input " + input, e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw new IllegalStateException("Error opening input " + input, e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Enables prefetching of inputs: when {@link #getResource()} is called, the next inputs in the queue are opened
+	 * in the background, using the threads of a given {@link ExecutorService}, and their first characters are read
+	 * into a buffer. Subsequent calls to {@link #getResource()} return inputs that are already open, so that the
+	 * consumer doesn't stall while the next input is opened.
+	 *
+	 * Memory usage is bounded: at most {@code inputsAhead} inputs are opened ahead of the input being consumed, and at
+	 * most {@code bufferSize} characters are read from each one in advance. Variables assigned to inputs are only
+	 * loaded when the input is returned by {@link #getResource()}, so {@link #readVariable(String)} and similar
+	 * methods always refer to the input currently being consumed.
+	 *
+	 * Inputs opened ahead of time are only closed when consumed, so the queue should be consumed until
+	 * {@link #isEmpty()} returns {@code true}.
+	 *
+	 * @param executor    the executor used to open inputs in the background.
+	 * @param inputsAhead the maximum number of inputs to open ahead of the input being consumed.
+	 * @param bufferSize  the maximum number of characters to read in advance from each input opened ahead.
+	 */
+	public final void enablePrefetching(ExecutorService executor, int inputsAhead, int bufferSize) {
+		if (executor == null) {
+			throw new IllegalArgumentException("Executor cannot be null");
+		}
+		if (inputsAhead <= 0) {
+			throw new IllegalArgumentException("Number of inputs to open ahead must be positive. Got " + inputsAhead);
+		}
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Prefetch buffer size must be positive. Got " + bufferSize);
+		}
+		synchronized (inputQueue) {
+			this.prefetchExecutor = executor;
+			this.inputsAhead = inputsAhead;
+			this.prefetchBufferSize = bufferSize;
+		}
+	}
+
+	private void prefetch(int count) {
+		while (prefetched.size() < count) {
+			final T input = pollInput();
+			if (input == null) {
+				break;
+			}
+			final int bufferSize = prefetchBufferSize;
+			Future<Reader> reader = prefetchExecutor.submit(new Callable<Reader>() {
+				@Override
+				public Reader call() throws Exception {
+					Reader reader = open(input);
+					try {
+						return new PrefetchedReader(reader, bufferSize);
+					} catch (IOException e) {
+						reader.close();
+						throw e;
+					}
+				}
+			});
+			prefetched.add(new Prefetch<T>(input, reader));
+		}
+	}
+
+	private static final class Prefetch<T> {
+		final T input;
+		final Future<Reader> reader;
+
+		Prefetch(T input, Future<Reader> reader) {
+			this.input = input;
+			this.reader = reader;
+		}
 	}
 
 	/**
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2013 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ */
+
+package com.univocity.api.io;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+
+/**
+ * A {@link Reader} that decodes a file directly from memory-mapped regions of the file, without copying its bytes
+ * into intermediate buffers. Files encoded in ISO-8859-1 or US-ASCII are decoded with a simple loop that converts
+ * each byte into a character, and runs of ASCII characters in UTF-8 files are decoded the same way. Other encodings
+ * are decoded with a {@link CharsetDecoder} reading from the mapped region.
+ *
+ * Large files are mapped one window at a time. Mapped regions are released by the garbage collector once this
+ * reader is closed and no longer referenced.
+ *
+ * Malformed input and unmappable characters are replaced, as done by {@link InputStreamReader}.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com</a>
+ * @see FileProvider#setMemoryMapped(boolean)
+ */
+final class MappedFileReader extends Reader {
+
+	static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+	private static final int MIN_WINDOW_SIZE = 16;
+
+	private static final int LATIN_1 = 0;
+	private static final int ASCII = 1;
+	private static final int UTF_8 = 2;
+	private static final int OTHER = 3;
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final long length;
+	private final int windowSize;
+	private final int mode;
+	private final CharsetDecoder decoder;
+
+	private ByteBuffer window;
+	private long windowStart;
+	private boolean flushed;
+	private int leftover = -1;
+
+	/**
+	 * Opens a file for reading.
+	 *
+	 * @param file       the file to read
+	 * @param encoding   the encoding of the file
+	 * @param windowSize the maximum number of bytes mapped at a time
+	 *
+	 * @throws IOException if the file can't be opened or mapped
+	 */
+	MappedFileReader(File file, Charset encoding, int windowSize) throws IOException {
+		this.file = new RandomAccessFile(file, "r");
+		try {
+			this.channel = this.file.getChannel();
+			this.length = channel.size();
+			this.windowSize = Math.max(windowSize, MIN_WINDOW_SIZE);
+			this.window = map(0L);
+		} catch (IOException e) {
+			this.file.close();
+			throw e;
+		}
+
+		String name = encoding.name();
+		if ("ISO-8859-1".equals(name)) {
+			mode = LATIN_1;
+		} else if ("US-ASCII".equals(name)) {
+			mode = ASCII;
+		} else if ("UTF-8".equals(name)) {
+			mode = UTF_8;
+		} else {
+			mode = OTHER;
+		}
+		if (mode == UTF_8 || mode == OTHER) {
+			decoder = encoding.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+		} else {
+			decoder = null;
+		}
+	}
+
+	private ByteBuffer map(long position) throws IOException {
+		windowStart = position;
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(windowSize, length - position));
+	}
+
+	/**
+	 * Maps the next region of the file, starting from the first byte not consumed yet.
+	 *
+	 * @return {@code false} if the current window already extends to the end of the file.
+	 */
+	private boolean nextWindow() throws IOException {
+		if (windowStart + window.limit() >= length) {
+			return false;
+		}
+		window = map(windowStart + window.position());
+		return true;
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || len > cbuf.length - off) {
+			throw new IndexOutOfBoundsException();
+		}
+		ensureOpen();
+		if (len == 0) {
+			return 0;
+		}
+		if (leftover != -1) {
+			cbuf[off] = (char) leftover;
+			leftover = -1;
+			return 1;
+		}
+
+		while (true) {
+			if (window.hasRemaining()) {
+				int count = decode(cbuf, off, len);
+				if (count > 0) {
+					return count;
+				}
+			}
+			if (!nextWindow()) {
+				return finish(cbuf, off, len);
+			}
+		}
+	}
+
+	private int decode(char[] cbuf, int off, int len) {
+		if (mode == OTHER) {
+			return decodeWithDecoder(cbuf, off, len);
+		}
+
+		ByteBuffer window = this.window;
+		int position = window.position();
+		int end = position + Math.min(len, window.remaining());
+		int o = off;
+		if (mode == LATIN_1) {
+			while (position < end) {
+				cbuf[o++] = (char) (window.get(position++) & 0xFF);
+			}
+		} else if (mode == ASCII) {
+			while (position < end) {
+				byte b = window.get(position++);
+				cbuf[o++] = b < 0 ? '\uFFFD' : (char) b;
+			}
+		} else {
+			byte b;
+			while (position < end && (b = window.get(position)) >= 0) {
+				cbuf[o++] = (char) b;
+				position++;
+			}
+		}
+		window.position(position);
+
+		int count = o - off;
+		if (count < len && mode == UTF_8 && window.hasRemaining()) {
+			count += decodeWithDecoder(cbuf, o, len - count);
+		}
+		return count;
+	}
+
+	private int decodeWithDecoder(char[] cbuf, int off, int len) {
+		CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+		CoderResult result = decoder.decode(window, out, false);
+		int count = out.position() - off;
+		if (count == 0 && result.isOverflow()) {
+			//a surrogate pair doesn't fit in the output: return the first char and keep the second one.
+			char[] pair = new char[2];
+			out = CharBuffer.wrap(pair);
+			decoder.decode(window, out, false);
+			cbuf[off] = pair[0];
+			if (out.position() == 2) {
+				leftover = pair[1];
+			}
+			return 1;
+		}
+		return count;
+	}
+
+	/**
+	 * Decodes any trailing bytes left at the end of the file, which can only form malformed input.
+	 */
+	private int finish(char[] cbuf, int off, int len) {
+		if (decoder == null || flushed) {
+			return -1;
+		}
+		CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+		if (!decoder.decode(window, out, true).isOverflow() && !decoder.flush(out).isOverflow()) {
+			flushed = true;
+		}
+		int count = out.position() - off;
+		return count == 0 ? -1 : count;
+	}
+
+	@Override
+	public boolean ready() throws IOException {
+		ensureOpen();
+		return leftover != -1 || window.hasRemaining() || windowStart + window.limit() < length;
+	}
+
+	private void ensureOpen() throws IOException {
+		if (window == null) {
+			throw new IOException("Stream closed");
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (window != null) {
+			window = null;
+			file.close();
+		}
+	}
+}
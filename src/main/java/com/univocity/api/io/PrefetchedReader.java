@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2013 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ */
+
+package com.univocity.api.io;
+
+import java.io.*;
+
+/**
+ * A {@link Reader} that serves the first characters of an input from a buffer filled ahead of time, and then
+ * continues reading from the input itself. Used by {@link InputQueue} to open and pre-buffer inputs in the
+ * background.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com</a>
+ */
+final class PrefetchedReader extends Reader {
+
+	private final Reader reader;
+	private char[] buffer;
+	private int position;
+	private int length;
+
+	/**
+	 * Reads up to {@code bufferSize} characters from a given reader, blocking until the buffer is full or the end of
+	 * the input is reached.
+	 *
+	 * @param reader     the input to read
+	 * @param bufferSize the maximum number of characters to read ahead
+	 *
+	 * @throws IOException if the input can't be read
+	 */
+	PrefetchedReader(Reader reader, int bufferSize) throws IOException {
+		this.reader = reader;
+		this.buffer = new char[bufferSize];
+		int read;
+		while (length < bufferSize && (read = reader.read(buffer, length, bufferSize - length)) != -1) {
+			length += read;
+		}
+		if (length == 0) {
+			buffer = null;
+		}
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if (buffer == null) {
+			return reader.read(cbuf, off, len);
+		}
+		if (len == 0) {
+			return 0;
+		}
+		int count = Math.min(len, length - position);
+		System.arraycopy(buffer, position, cbuf, off, count);
+		position += count;
+		if (position == length) {
+			//releases the buffer as soon as it is consumed
+			buffer = null;
+		}
+		return count;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (buffer == null) {
+			return reader.read();
+		}
+		char ch = buffer[position++];
+		if (position == length) {
+			buffer = null;
+		}
+		return ch;
+	}
+
+	@Override
+	public boolean ready() throws IOException {
+		return buffer != null || reader.ready();
+	}
+
+	@Override
+	public void close() throws IOException {
+		buffer = null;
+		reader.close();
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2013 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ */
+
+package com.univocity.api.io;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * An input claimed from an {@link InputQueue} with {@link InputQueue#next()}, open for reading, along with the
+ * variables assigned to it. Each worker thread that consumes a queue gets its own {@code QueuedInput}, so variables
+ * of different inputs can be read concurrently.
+ *
+ * @param <T> the type of input held by the queue.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com</a>
+ * @see InputQueue
+ */
+public final class QueuedInput<T> implements Closeable {
+
+	private final T input;
+	private final Reader reader;
+	private final Map<String, Object> variables;
+
+	QueuedInput(T input, Reader reader, Map<String, Object> variables) {
+		this.input = input;
+		this.reader = reader;
+		if (variables == null) {
+			this.variables = Collections.emptyMap();
+		} else {
+			this.variables = Collections.unmodifiableMap(variables);
+		}
+	}
+
+	/**
+	 * Returns the input claimed from the queue.
+	 *
+	 * @return the input being read
+	 */
+	public T getInput() {
+		return input;
+	}
+
+	/**
+	 * Returns the {@link java.io.Reader} used to consume the input.
+	 *
+	 * @return the reader of the input
+	 */
+	public Reader getReader() {
+		return reader;
+	}
+
+	/**
+	 * Returns the value assigned to a given variable associated with this input.
+	 *
+	 * @param variable the variable name
+	 *
+	 * @return the value of the variable, or {@code null} if it doesn't exist
+	 */
+	public Object readVariable(String variable) {
+		return variables.get(variable);
+	}
+
+	/**
+	 * Returns the value assigned to a given variable associated with this input.
+	 *
+	 * @param variable     the variable name
+	 * @param defaultValue a default value to return in case the variable doesn't exist or its value is {@code null}
+	 * @param <V>          the type of value returned by this method.
+	 *
+	 * @return the value of the variable, or the default value if the variable value evaluates to {@code null}
+	 */
+	@SuppressWarnings("unchecked")
+	public <V> V readVariable(String variable, V defaultValue) {
+		Object out = variables.get(variable);
+		if (out == null) {
+			return defaultValue;
+		}
+		return (V) out;
+	}
+
+	/**
+	 * Returns the value assigned to a given variable associated with this input.
+	 *
+	 * @param variable the variable name
+	 * @param type     the type of value expected to be returned. The value assigned to this
+	 *                 variable will be cast to the given type.
+	 * @param <V>      the type of value returned by this method.
+	 *
+	 * @return the value of the variable, or {@code null} if the variable doesn't exist
+	 */
+	public <V> V readVariable(String variable, Class<V> type) {
+		Object out = variables.get(variable);
+		if (out != null) {
+			return type.cast(out);
+		}
+		return null;
+	}
+
+	/**
+	 * Returns an unmodifiable map of all variables assigned to this input.
+	 *
+	 * @return all variables associated with this input.
+	 */
+	public Map<String, Object> getVariables() {
+		return variables;
+	}
+
+	/**
+	 * Closes the {@link java.io.Reader} of this input.
+	 *
+	 * @throws IOException if the reader can't be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	@Override
+	public String toString() {
+		return String.valueOf(input);
+	}
+}
@@ -22,6 +22,11 @@ import java.util.*;
  * Use {@link #setUrlParameter(String, Object)} to set the values of any parameters so that {@link #getUrl()}
  * generates the final URL.
  *
+ * Parameters can declare how their values must be encoded, so values don't need to be encoded beforehand:
+ * {@code "https://www.google.com/{PATH, path}?q={QUERY, query}"} percent-encodes values of {@code PATH} as a path
+ * segment and values of {@code QUERY} as a query parameter value, while the URL is generated.
+ * Refer to {@link ParameterEncoding} for details.
+ *
  * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com</a>
  * @see HttpMethodType
  * @see HttpResponse
@@ -58,20 +63,28 @@ public final class HttpRequest implements Cloneable {
 	 * Modifies the URL this HTTP request. Parameter values set in the previous URL will be re-applied on the new URL,
 	 * if their names match.
 	 *
+	 * URLs are parsed through the global template cache of {@link ParameterizedTemplate}, so switching between a
+	 * limited set of URL patterns doesn't require parsing them again.
+	 *
 	 * @param url the new request URL.
 	 */
 	public void setUrl(String url) {
 		Args.notBlank(url, "HTTP request URL");
 
-		Map<String, Object> oldParameters = Collections.emptyMap();
-		if (this.url != null) {
-			oldParameters = this.url.getParameterValues();
+		ParameterizedTemplate template = ParameterizedTemplate.compile(url);
+		if (this.url != null && this.url.getTemplate() == template) {
+			return;
 		}
 
-		this.url = new ParameterizedString(url);
+		ParameterizedString oldUrl = this.url;
+		this.url = template.bind();
 
-		for (String param : this.url.getParameters()) {
-			this.url.set(param, oldParameters.get(param));
+		if (oldUrl != null) {
+			for (String param : this.url.getParameters()) {
+				if (oldUrl.contains(param)) {
+					this.url.set(param, oldUrl.get(param));
+				}
+			}
 		}
 	}
 
@@ -228,7 +241,8 @@ public final class HttpRequest implements Cloneable {
 	 * The value will be used to modify the address that will be accessed by this HTTP request.
 	 *
 	 * Calling {@link #getUrl()} will return the updated target URL of this request. Parameters without values
-	 * won't be replaced in the URL.
+	 * won't be replaced in the URL. If the parameter declares an encoding context in the URL, such as
+	 * {@code {QUERY, query}}, the value will be percent-encoded accordingly, otherwise it is used as-is.
 	 *
 	 * @param parameterName  name of the parameter enclosed within { and } in the URL
 	 * @param parameterValue value of the given parameter, to replace the parameter name in the URL
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2013 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ */
+
+package com.univocity.api.common;
+
+import org.testng.*;
+import org.testng.annotations.*;
+
+import java.lang.management.*;
+import java.util.*;
+
+import static org.testng.Assert.*;
+
+public class ArgsTest {
+
+	@Test
+	public void testReplaceSystemProperties() {
+		String home = System.getProperty("user.home");
+		String user = System.getProperty("user.name");
+
+		assertEquals(Args.replaceSystemProperties("{user.home}/{user.name}/x"), home + "/" + user + "/x");
+		assertEquals(Args.replaceSystemProperties("C:\\{user.name}"), "C:\\" + user);
+		assertEquals(Args.replaceSystemProperties("{unknown.property}/{user.name}"), "{unknown.property}/" + user);
+		assertEquals(Args.replaceSystemProperties("{unknown.property:/tmp}/a"), "/tmp/a");
+		assertEquals(Args.replaceSystemProperties("{unknown.property:{user.home}/app}"), home + "/app");
+		assertEquals(Args.replaceSystemProperties("{unknown.property:{other.property}}"), "{other.property}");
+		assertEquals(Args.replaceSystemProperties("{}{user.name"), "{}{user.name");
+		assertEquals(Args.replaceSystemProperties("no properties"), "no properties");
+		assertNull(Args.replaceSystemProperties(null));
+	}
+
+	@Test
+	public void testBlankValidation() {
+		assertTrue(Args.isBlank(null));
+		assertTrue(Args.isBlank(""));
+		assertTrue(Args.isBlank(" \t\r\n\u0000"));
+		assertFalse(Args.isBlank("  a  "));
+		assertFalse(Args.isBlank("\u00A0"));
+		assertTrue(Args.isNotBlank(" x"));
+
+		Args.notBlank(new StringBuilder(" a "), "value");
+		try {
+			Args.notBlank(new StringBuilder("  "), "value");
+			fail("Expected blank value to be rejected");
+		} catch (IllegalArgumentException e) {
+			assertEquals(e.getMessage(), "value cannot be blank");
+		}
+
+		Args.notNullAll(new String[]{"a", " "}, "values");
+		Args.notNullAll(new String[0], "values");
+		Args.notNullAll(Arrays.asList("a", ""), "values");
+		try {
+			Args.notNullAll(new Object[]{"a", null}, "values");
+			fail("Expected null element to be rejected");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("index 1"), e.getMessage());
+		}
+		try {
+			Args.notNullAll(Arrays.asList("a", null), "values");
+			fail("Expected null element to be rejected");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+
+	@Test
+	public void testBlankValidationDoesNotAllocate() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+			throw new SkipException("Per-thread allocation counters are not available in this JVM");
+		}
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+		if (!bean.isThreadAllocatedMemorySupported() || !bean.isThreadAllocatedMemoryEnabled()) {
+			throw new SkipException("Per-thread allocation counters are not enabled in this JVM");
+		}
+
+		String[] values = {"  padded value  ", "value", " ", "\tx\t"};
+		StringBuilder builder = new StringBuilder(" builder ");
+		int blanks = 0;
+		for (int i = 0; i < 20000; i++) {
+			blanks += validate(values, builder);
+		}
+
+		long id = Thread.currentThread().getId();
+		long before = bean.getThreadAllocatedBytes(id);
+		for (int i = 0; i < 100000; i++) {
+			blanks += validate(values, builder);
+		}
+		long allocated = bean.getThreadAllocatedBytes(id) - before;
+
+		assertEquals(blanks, 120000);
+		assertTrue(allocated < 64 * 1024, "Allocated " + allocated + " bytes");
+	}
+
+	private static int validate(String[] values, StringBuilder builder) {
+		int blanks = 0;
+		for (String value : values) {
+			if (Args.isBlank(value)) {
+				blanks++;
+			}
+		}
+		Args.notBlank(values[0], "value");
+		Args.notBlank(builder, "builder");
+		Args.notNullAll(values, "values");
+		return blanks;
+	}
+}
@@ -35,4 +35,31 @@ public class HttpRequestTest {
 		request.clearUrlParameters();
 		assertEquals(request.getUrl(), "https://www.google.com.au/?q={QUERY}#q={QUERY}&tbs=qdr:{PERIOD}");
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testSetUrlKeepsParameterValues() {
+		HttpRequest request = new UrlReaderProvider("https://www.google.com.au/?q={QUERY}").getRequest();
+		request.setUrlParameter("QUERY", "univocity");
+
+		request.setUrl("https://www.google.com.au/?q={QUERY}");
+		assertEquals(request.getUrl(), "https://www.google.com.au/?q=univocity");
+
+		request.setUrl("https://www.google.com/search?q={QUERY}&tbs=qdr:{PERIOD}");
+		assertEquals(request.getUrl(), "https://www.google.com/search?q=univocity&tbs=qdr:{PERIOD}");
+	}
+
+	@Test
+	public void testUrlParameterEncoding() {
+		HttpRequest request = new UrlReaderProvider("https://example.com/{DIR, path}/{FILE, lpad:3:0|path}?q={QUERY, query}&raw={RAW, raw}").getRequest();
+		assertEquals(request.getUrlParameters().size(), 4);
+
+		request.setUrlParameter("DIR", "a/b c");
+		request.setUrlParameter("FILE", 7);
+		request.setUrlParameter("QUERY", "x&y=z+1 #\u00E3\u20AC");
+		request.setUrlParameter("RAW", "a%20b");
+		assertEquals(request.getUrl(), "https://example.com/a%2Fb%20c/007?q=x%26y%3Dz%2B1%20%23%C3%A3%E2%82%AC&raw=a%20b");
+
+		request.setUrlParameter("QUERY", "plain-ascii_value.~/?:@");
+		assertEquals(request.getUrl(), "https://example.com/a%2Fb%20c/007?q=plain-ascii_value.~/?:@&raw=a%20b");
+	}
+}
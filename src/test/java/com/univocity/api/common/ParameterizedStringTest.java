@@ -6,9 +6,17 @@
 
 package com.univocity.api.common;
 
+import com.univocity.api.io.*;
 import org.testng.*;
 import org.testng.annotations.*;
 
+import java.io.*;
+import java.nio.charset.*;
+import java.text.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
 /**
  * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com</a>
  */
@@ -112,4 +120,467 @@ public class ParameterizedStringTest {
 		Assert.assertEquals(str.applyParameterValues(), "www.google.com/27{two}");
 
 	}
+
+	@Test
+	public void testApplyParameterValuesToAppendable() throws Exception {
+		ParameterizedString str = new ParameterizedString("{one}www.google.com/{one}//{two}//{one}?q={three}");
+		str.set("one", "pen");
+		str.set("three", 3);
+
+		StringWriter out = new StringWriter();
+		str.applyParameterValues(out);
+		Assert.assertEquals(out.toString(), "penwww.google.com/pen//{two}//pen?q=3");
+		Assert.assertEquals(str.applyParameterValues(), out.toString());
+
+		StringBuilder builder = new StringBuilder("url: ");
+		str.applyParameterValues(builder);
+		Assert.assertEquals(builder.toString(), "url: penwww.google.com/pen//{two}//pen?q=3");
+
+		str = new ParameterizedString("www.google.com/<<search>>/<<page>>", "<<", ">>");
+		str.set("search", "univocity");
+		Assert.assertEquals(str.applyParameterValues(), "www.google.com/univocity/<<page>>");
+	}
+
+	@Test
+	public void testSetParameterBySlot() {
+		ParameterizedString str = new ParameterizedString("www.google.com/{one}{two}{one}");
+		Assert.assertEquals(str.slotCount(), 2);
+
+		int one = str.slot("one");
+		int two = str.slot("two");
+		Assert.assertFalse(one == two);
+
+		str.set(one, "pen");
+		Assert.assertEquals(str.get("one"), "pen");
+		Assert.assertEquals(str.applyParameterValues(), "www.google.com/pen{two}pen");
+
+		str.set("two", "hello");
+		Assert.assertEquals(str.get(two), "hello");
+		Assert.assertEquals(str.applyParameterValues(), "www.google.com/penhellopen");
+
+		str.set(one, null);
+		Assert.assertEquals(str.applyParameterValues(), "www.google.com/{one}hello{one}");
+		Assert.assertEquals(str.getParameterValues().size(), 1);
+
+		try {
+			str.slot("three");
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			//ok then
+		}
+	}
+
+	@Test
+	public void testSharedTemplate() throws Exception {
+		final ParameterizedTemplate template = new ParameterizedTemplate("www.google.com/{search}?page={page}");
+		final String[] results = new String[8];
+
+		Thread[] threads = new Thread[results.length];
+		for (int i = 0; i < threads.length; i++) {
+			final int index = i;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					ParameterizedString str = template.bind();
+					str.set("search", "thread" + index);
+					str.set("page", index);
+					results[index] = str.applyParameterValues();
+				}
+			};
+			threads[i].start();
+		}
+
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+			Assert.assertEquals(results[i], "www.google.com/thread" + i + "?page=" + i);
+		}
+
+		ParameterizedString str = template.bind();
+		str.set("search", "univocity");
+		ParameterizedString clone = str.clone();
+		clone.set("page", 2);
+
+		Assert.assertSame(clone.getTemplate(), template);
+		Assert.assertEquals(str.applyParameterValues(), "www.google.com/univocity?page={page}");
+		Assert.assertEquals(clone.applyParameterValues(), "www.google.com/univocity?page=2");
+	}
+
+	@Test
+	public void testWriteTo() throws Exception {
+		ParameterizedString str = new ParameterizedString("INSERT INTO {table} VALUES ('{body}', '{footer}')");
+		str.set("table", "documents");
+		str.set("body", new StringReader("some long content"));
+		str.set("footer", new StringReaderProvider("the end"));
+
+		StringWriter out = new StringWriter();
+		str.writeTo(out);
+		Assert.assertEquals(out.toString(), "INSERT INTO documents VALUES ('some long content', 'the end')");
+
+		str.set("body", new StringReaderProvider("ação"));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		str.writeTo(bytes, Charset.forName("UTF-8"));
+		Assert.assertEquals(new String(bytes.toByteArray(), "UTF-8"), "INSERT INTO documents VALUES ('ação', 'the end')");
+	}
+
+	@Test
+	public void testIncrementalRendering() {
+		StringBuilder longPath = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			longPath.append("/segment").append(i).append("/{a}");
+		}
+		ParameterizedString str = new ParameterizedString("http://{host}" + longPath + "?q={query}&page={page}");
+		str.set("host", "www.univocity.com");
+		str.set("a", "x");
+		str.set("query", "csv");
+
+		String expectedPrefix = "http://www.univocity.com" + longPath.toString().replace("{a}", "x") + "?q=csv&page=";
+		for (int page = 1; page <= 3; page++) {
+			str.set("page", page);
+			Assert.assertEquals(str.applyParameterValues(), expectedPrefix + page);
+		}
+
+		str.set("query", null);
+		Assert.assertEquals(str.applyParameterValues(), expectedPrefix.replace("q=csv", "q={query}") + 3);
+
+		str.set("host", "localhost");
+		str.set("page", 10);
+		Assert.assertEquals(str.applyParameterValues(), expectedPrefix.replace("q=csv", "q={query}").replace("www.univocity.com", "localhost") + 10);
+
+		ParameterizedString clone = str.clone();
+		clone.set("page", 11);
+		Assert.assertEquals(clone.applyParameterValues(), expectedPrefix.replace("q=csv", "q={query}").replace("www.univocity.com", "localhost") + 11);
+		Assert.assertEquals(str.applyParameterValues(), expectedPrefix.replace("q=csv", "q={query}").replace("www.univocity.com", "localhost") + 10);
+
+		str.clearValues();
+		Assert.assertEquals(str.applyParameterValues(), str.toString());
+	}
+
+	@Test
+	public void testIncrementalRenderingWithMutableValues() throws Exception {
+		ParameterizedString str = new ParameterizedString("{name}/{tags}/{page}");
+		StringBuilder name = new StringBuilder("a");
+		List<String> tags = new ArrayList<String>(Arrays.asList("x"));
+		str.set("name", name);
+		str.set("tags", tags);
+		str.set("page", 1);
+		Assert.assertEquals(str.applyParameterValues(), "a/[x]/1");
+
+		name.append('b');
+		tags.add("y");
+		Assert.assertEquals(str.applyParameterValues(), "ab/[x, y]/1");
+		str.set("page", 2);
+		name.append('c');
+		Assert.assertEquals(str.applyParameterValues(), "abc/[x, y]/2");
+
+		StringWriter out = new StringWriter();
+		tags.clear();
+		str.writeTo(out);
+		Assert.assertEquals(out.toString(), "abc/[]/2");
+	}
+
+	@Test
+	public void testReaderValuesAreConsumedOnce() throws Exception {
+		ParameterizedString str = new ParameterizedString("{page}/{body}");
+		str.set("page", 1);
+		str.set("body", new StringReader("content"));
+		Assert.assertEquals(str.applyParameterValues(), "1/content");
+		Assert.assertEquals(str.applyParameterValues(), "1/content");
+
+		StringWriter out = new StringWriter();
+		str.writeTo(out);
+		Assert.assertEquals(out.toString(), "1/content");
+
+		str.set("page", 2);
+		try {
+			str.applyParameterValues();
+			Assert.fail("Expected consumed reader to be rejected");
+		} catch (IllegalStateException e) {
+			//expected
+		}
+
+		str.set("body", new StringReader("more"));
+		out = new StringWriter();
+		str.writeTo(out);
+		Assert.assertEquals(out.toString(), "2/more");
+		try {
+			str.writeTo(new StringWriter());
+			Assert.fail("Expected consumed reader to be rejected");
+		} catch (IllegalStateException e) {
+			//expected
+		}
+
+		str.set("body", new ReaderProvider() {
+			@Override
+			public Reader getResource() {
+				return new StringReader("provided");
+			}
+		});
+		Assert.assertEquals(str.applyParameterValues(), "2/provided");
+		str.set("page", 3);
+		Assert.assertEquals(str.applyParameterValues(), "3/provided");
+	}
+
+	@Test
+	public void testRenderAll() {
+		ParameterizedString str = new ParameterizedString("http://{host}/items/{id}?v={version}");
+		str.set("host", "localhost");
+
+		List<Object[]> rows = new ArrayList<Object[]>();
+		for (int i = 0; i < 2000; i++) {
+			rows.add(new Object[]{i, i % 3});
+		}
+
+		Iterator<String> results = str.renderAll(rows.iterator(), "id", "version");
+		for (int i = 0; i < rows.size(); i++) {
+			Assert.assertEquals(results.next(), "http://localhost/items/" + i + "?v=" + (i % 3));
+		}
+		Assert.assertFalse(results.hasNext());
+		Assert.assertEquals(str.applyParameterValues(), "http://localhost/items/{id}?v={version}");
+
+		final List<String> notified = new ArrayList<String>();
+		final boolean[] last = new boolean[1];
+		NotificationHandler<String> handler = new NotificationHandler<String>() {
+			@Override
+			public void notify(String notification, boolean lastNotification) {
+				Assert.assertFalse(last[0]);
+				notified.add(notification);
+				last[0] = lastNotification;
+			}
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			str.renderAll(rows.iterator(), handler, executor, "id", "version");
+		} finally {
+			executor.shutdown();
+		}
+		Assert.assertTrue(last[0]);
+		Assert.assertEquals(notified.size(), rows.size());
+		for (int i = 0; i < rows.size(); i++) {
+			Assert.assertEquals(notified.get(i), "http://localhost/items/" + i + "?v=" + (i % 3));
+		}
+
+		Map<String, Object> values = new HashMap<String, Object>();
+		values.put("id", 7);
+		values.put("unknown", 7);
+		results = str.renderAll(Collections.singletonList(values));
+		Assert.assertEquals(results.next(), "http://localhost/items/7?v={version}");
+	}
+
+	private enum Host {
+		LOCAL;
+
+		static int rendered;
+
+		@Override
+		public String toString() {
+			rendered++;
+			return "localhost";
+		}
+	}
+
+	@Test
+	public void testRenderAllReusesUnchangedValues() {
+		ParameterizedString str = new ParameterizedString("http://{host}/items/{id}");
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		for (int i = 0; i < 100; i++) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put("host", Host.LOCAL);
+			row.put("id", i);
+			rows.add(row);
+		}
+
+		Host.rendered = 0;
+		Iterator<String> results = str.renderAll(rows);
+		for (int i = 0; i < rows.size(); i++) {
+			Assert.assertEquals(results.next(), "http://localhost/items/" + i);
+		}
+		Assert.assertEquals(Host.rendered, 1);
+
+		Host.rendered = 0;
+		List<Object[]> arrays = new ArrayList<Object[]>();
+		for (int i = 0; i < 100; i++) {
+			arrays.add(new Object[]{Host.LOCAL, i});
+		}
+		results = str.renderAll(arrays.iterator(), "host", "id");
+		while (results.hasNext()) {
+			results.next();
+		}
+		Assert.assertEquals(Host.rendered, 1);
+	}
+
+	@Test
+	public void testParallelRenderAllStopsOnFailure() {
+		ParameterizedString str = new ParameterizedString("/items/{id}");
+		final AtomicInteger read = new AtomicInteger();
+		final int total = 1000000;
+		Iterator<Object[]> rows = new Iterator<Object[]>() {
+			@Override
+			public boolean hasNext() {
+				return read.get() < total;
+			}
+
+			@Override
+			public Object[] next() {
+				return new Object[]{read.incrementAndGet()};
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			str.renderAll(rows, new NotificationHandler<String>() {
+				@Override
+				public void notify(String notification, boolean lastNotification) {
+					if (notification.equals("/items/10")) {
+						throw new IllegalStateException("handler failed");
+					}
+				}
+			}, executor, "id");
+			Assert.fail("Expected handler failure to be rethrown");
+		} catch (IllegalStateException e) {
+			Assert.assertEquals(e.getMessage(), "handler failed");
+		} finally {
+			executor.shutdown();
+		}
+		Assert.assertTrue(read.get() < total);
+	}
+
+	@Test
+	public void testTemplateCache() {
+		String pattern = "http://localhost/cached/{id}/" + System.nanoTime();
+		long misses = ParameterizedTemplate.getCacheMisses();
+		long hits = ParameterizedTemplate.getCacheHits();
+
+		ParameterizedString first = new ParameterizedString(pattern);
+		ParameterizedString second = new ParameterizedString(pattern);
+
+		Assert.assertSame(first.getTemplate(), second.getTemplate());
+		Assert.assertTrue(ParameterizedTemplate.getCacheMisses() > misses);
+		Assert.assertTrue(ParameterizedTemplate.getCacheHits() > hits);
+
+		Assert.assertNotSame(new ParameterizedString(pattern, "{", "/").getTemplate(), first.getTemplate());
+
+		first.set("id", 1);
+		Assert.assertEquals(second.applyParameterValues(), pattern);
+	}
+
+	@Test
+	public void testTemplateCacheLengthLimit() {
+		int originalLimit = ParameterizedTemplate.getMaximumCachedLength();
+		try {
+			ParameterizedTemplate.clearCache();
+			ParameterizedTemplate.setMaximumCachedLength(100);
+
+			StringBuilder large = new StringBuilder("{id}");
+			while (large.length() <= 100) {
+				large.append("/large");
+			}
+			ParameterizedTemplate template = ParameterizedTemplate.compile(large.toString());
+			Assert.assertNotSame(ParameterizedTemplate.compile(large.toString()), template);
+			Assert.assertEquals(ParameterizedTemplate.getCacheSize(), 0);
+
+			for (int i = 0; i < 10; i++) {
+				ParameterizedTemplate.compile("/small/{id}/" + i + "/0123456789");
+				Assert.assertTrue(ParameterizedTemplate.getCachedLength() <= 100);
+			}
+			Assert.assertTrue(ParameterizedTemplate.getCacheSize() < 10);
+			Assert.assertSame(ParameterizedTemplate.compile("/small/{id}/9/0123456789"), ParameterizedTemplate.compile("/small/{id}/9/0123456789"));
+
+			ParameterizedTemplate.setMaximumCachedLength(0);
+			Assert.assertEquals(ParameterizedTemplate.getCacheSize(), 0);
+			Assert.assertEquals(ParameterizedTemplate.getCachedLength(), 0L);
+		} finally {
+			ParameterizedTemplate.setMaximumCachedLength(originalLimit);
+		}
+	}
+
+	@Test
+	public void testFormattedParameters() {
+		ParameterizedString str = new ParameterizedString("/{date, date:yyyy/MM/dd}/{id, number:0|lpad:6:0}/{amount, number:#,##0.00}?q={query, url}&n={name,rpad:5:.}");
+		Assert.assertEquals(str.getFormat("amount"), "number:#,##0.00");
+
+		Calendar calendar = Calendar.getInstance();
+		calendar.clear();
+		calendar.set(2015, Calendar.DECEMBER, 25);
+
+		str.set("date", calendar);
+		str.set("id", 42.0);
+		str.set("amount", 1234.5);
+		str.set("query", "a b&c");
+		str.set("name", "ab");
+		String amount = new DecimalFormat("#,##0.00").format(1234.5);
+		Assert.assertEquals(str.applyParameterValues(), "/2015/12/25/000042/" + amount + "?q=a+b%26c&n=ab...");
+
+		str.set("date", calendar.getTime());
+		str.set("amount", "not a number");
+		Assert.assertEquals(str.applyParameterValues(), "/2015/12/25/000042/not a number?q=a+b%26c&n=ab...");
+
+		try {
+			new ParameterizedString("{id, lpad:abc}");
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			//ok then
+		}
+	}
+
+	@Test
+	public void testUnknownFormatsDoNotChangeOutput() {
+		ParameterizedString str = new ParameterizedString("{x, upper}/{y, #,##0.00}/{z, yyyy|lpad:3:0}");
+		Assert.assertEquals(str.getFormat("x"), "upper");
+		Assert.assertEquals(str.getFormat("y"), "#,##0.00");
+
+		str.set("x", 5);
+		str.set("y", 1234.5);
+		str.set("z", 7);
+		Assert.assertEquals(str.applyParameterValues(), "5/1234.5/007");
+	}
+
+	@Test
+	public void testEscapingAndDefaultValues() {
+		ParameterizedString str = new ParameterizedString("\\{literal}/{page:1}/{size:10, lpad:3:0}/{next:{page}}", "{", "}", true);
+		Assert.assertEquals(str.getParameters(), new TreeSet<String>(Arrays.asList("page", "size", "next")));
+		Assert.assertEquals(str.applyParameterValues(), "{literal}/1/010/{page}");
+
+		str.set("page", 5);
+		str.set("next", 6);
+		Assert.assertEquals(str.applyParameterValues(), "{literal}/5/010/6");
+
+		str.clearValues();
+		Assert.assertEquals(str.applyParameterValues(), "{literal}/1/010/{page}");
+
+		Assert.assertEquals(new ParameterizedString("{unclosed").applyParameterValues(), "{unclosed");
+	}
+
+	@Test
+	public void testBackslashesAndColonsWithoutExtendedSyntax() {
+		ParameterizedString str = new ParameterizedString("C:\\data\\{dir}\\file?q={a:b}&r={x:{y}");
+		Assert.assertFalse(str.getTemplate().isExtendedSyntax());
+		Assert.assertEquals(str.getParameters(), new TreeSet<String>(Arrays.asList("a:b", "dir", "x:{y")));
+		Assert.assertEquals(str.applyParameterValues(), "C:\\data\\{dir}\\file?q={a:b}&r={x:{y}");
+
+		str.set("dir", "in");
+		str.set("a:b", 1);
+		Assert.assertEquals(str.applyParameterValues(), "C:\\data\\in\\file?q=1&r={x:{y}");
+	}
+
+	@Test
+	public void testParameterEncoding() {
+		ParameterizedString str = new ParameterizedString("/{dir, path}?q={query, query}&n={name}");
+		Assert.assertEquals(str.getEncoding("dir"), ParameterEncoding.PATH_SEGMENT);
+		Assert.assertEquals(str.getEncoding("query"), ParameterEncoding.QUERY_VALUE);
+		Assert.assertNull(str.getEncoding("name"));
+
+		str.set("dir", new StringReader("x/\uD83D\uDE00"));
+		str.set("query", "a&b");
+		str.set("name", "a&b");
+		Assert.assertEquals(str.applyParameterValues(), "/x%2F%F0%9F%98%80?q=a%26b&n=a&b");
+
+		Assert.assertEquals(ParameterEncoding.PATH_SEGMENT.encode("\uD800x"), "%EF%BF%BDx");
+		Assert.assertEquals(ParameterEncoding.RAW.encode("a b"), "a b");
+	}
 }
@@ -0,0 +1,668 @@
+/*
+ * Copyright (c) 2013 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ */
+
+package com.univocity.api.config;
+
+import com.univocity.api.exception.*;
+import org.testng.*;
+import org.testng.annotations.*;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import static org.testng.Assert.*;
+
+public class PropertyBasedConfigurationTest {
+
+	private static PropertyBasedConfiguration configuration(String properties) {
+		return new PropertyBasedConfiguration(new StringReader(properties));
+	}
+
+	@Test
+	public void testPropertyHandles() {
+		String tmp = System.getProperty("java.io.tmpdir");
+		PropertyBasedConfiguration config = configuration("" +
+				"pool.size=8\n" +
+				"max.bytes=10000000000\n" +
+				"hosts=a, b,,c\n" +
+				"work.dir=" + tmp.replace("\\", "/") + "\n" +
+				"name=test\n" +
+				"invalid=x\n");
+
+		PropertyHandle<Integer> poolSize = config.integerHandle("pool.size");
+		assertEquals(poolSize.get(), Integer.valueOf(8));
+		assertEquals(poolSize.getProperty(), "pool.size");
+		assertEquals(config.integerHandle("missing", 3).get(), Integer.valueOf(3));
+
+		assertEquals(config.longHandle("max.bytes").get(), Long.valueOf(10000000000L));
+		assertEquals(config.getLong("max.bytes"), Long.valueOf(10000000000L));
+		assertNull(config.longHandle("missing", null).get());
+
+		PropertyHandle<List<String>> hosts = config.listHandle("hosts");
+		assertEquals(hosts.get(), Arrays.asList("a", "b", "c"));
+		try {
+			hosts.get().add("d");
+			fail("Expected list to be unmodifiable");
+		} catch (UnsupportedOperationException e) {
+			//expected
+		}
+
+		PropertyHandle<File> workDir = config.directoryHandle("work.dir", true, true, false, false);
+		assertEquals(workDir.get(), new File(config.normalizeFilePath(tmp.replace("\\", "/"))));
+		assertSame(workDir.get(), workDir.get());
+
+		assertEquals(config.stringHandle("name").get(), "test");
+		assertEquals(config.stringHandle("missing", "default").get(), "default");
+
+		try {
+			config.integerHandle("invalid");
+			fail("Expected conversion to fail");
+		} catch (IllegalConfigurationException e) {
+			//expected
+		}
+	}
+
+	@Test
+	public void testVariableResolution() {
+		PropertyBasedConfiguration config = configuration("" +
+				"app.status.dir=${app.dir}/status\n" +
+				"app.dir=/opt/${app.name}\n" +
+				"app.name=demo\n" +
+				"app.batch.dir=${dir}/batch_!{batch}\n" +
+				"empty=\n" +
+				"java=${java.version}\n");
+
+		assertEquals(config.getProperty("app.dir"), "/opt/demo");
+		assertEquals(config.getProperty("app.status.dir"), "/opt/demo/status");
+		assertEquals(config.getProperty("app.batch.dir", "batch", "1"), "/opt/demo/batch_1");
+		assertNull(config.getProperty("empty"));
+		assertEquals(config.getProperty("java"), System.getProperty("java.version"));
+	}
+
+	@Test
+	public void testLongChainOfReferences() {
+		StringBuilder properties = new StringBuilder();
+		int count = 20000;
+		for (int i = 0; i < count; i++) {
+			properties.append("p").append(i).append("=${p").append(i + 1).append("}\n");
+		}
+		properties.append("p").append(count).append("=end\n");
+
+		PropertyBasedConfiguration config = configuration(properties.toString());
+		assertEquals(config.getProperty("p0"), "end");
+		assertEquals(config.getProperty("p" + (count / 2)), "end");
+	}
+
+	@Test
+	public void testCyclicReferences() {
+		try {
+			configuration("a=${b}\nb=x${c}\nc=${b}\n");
+			fail("Expected cyclic reference to be detected");
+		} catch (IllegalConfigurationException e) {
+			assertTrue(e.getMessage().contains("b -> c -> b"), e.getMessage());
+		}
+
+		try {
+			configuration("a=${undefined.property.xyz}\n");
+			fail("Expected undefined variable to be reported");
+		} catch (IllegalConfigurationException e) {
+			assertTrue(e.getMessage().contains("${undefined.property.xyz}"), e.getMessage());
+		}
+	}
+
+	private static void write(File file, String content) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "ISO-8859-1");
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+	}
+
+	@Test
+	public void testReloadableConfiguration() throws Exception {
+		File file = File.createTempFile("reloadable", ".properties");
+		file.deleteOnExit();
+		write(file, "db.url=jdbc:a\ndb.user=admin\napp.name=demo\n");
+
+		ReloadableConfiguration reloadable = new ReloadableConfiguration(file);
+		PropertyBasedConfiguration initial = reloadable.getConfiguration();
+		assertEquals(initial.getProperty("db.url"), "jdbc:a");
+
+		final List<Set<String>> dbChanges = new ArrayList<Set<String>>();
+		final List<Set<String>> appChanges = new ArrayList<Set<String>>();
+		reloadable.addListener("db.", new ConfigurationChangeListener() {
+			@Override
+			public void configurationChanged(PropertyBasedConfiguration configuration, Set<String> changedProperties) {
+				dbChanges.add(changedProperties);
+			}
+		});
+		reloadable.addListener("app.", new ConfigurationChangeListener() {
+			@Override
+			public void configurationChanged(PropertyBasedConfiguration configuration, Set<String> changedProperties) {
+				appChanges.add(changedProperties);
+			}
+		});
+
+		assertFalse(reloadable.reloadIfModified());
+
+		write(file, "db.url=jdbc:bb\ndb.pool=4\napp.name=demo\n");
+		assertTrue(reloadable.reloadIfModified());
+		assertEquals(reloadable.getConfiguration().getProperty("db.url"), "jdbc:bb");
+		assertEquals(initial.getProperty("db.url"), "jdbc:a");
+
+		assertEquals(dbChanges.size(), 1);
+		assertEquals(dbChanges.get(0), new TreeSet<String>(Arrays.asList("db.url", "db.user", "db.pool")));
+		assertTrue(appChanges.isEmpty());
+
+		//same length, same modification time: only the contents tell the change apart
+		long modified = file.lastModified();
+		write(file, "db.url=jdbc:cc\ndb.pool=4\napp.name=demo\n");
+		assertTrue(file.setLastModified(modified));
+		assertTrue(reloadable.reloadIfModified());
+		assertEquals(reloadable.getConfiguration().getProperty("db.url"), "jdbc:cc");
+		assertFalse(reloadable.reloadIfModified());
+
+		PropertyBasedConfiguration current = reloadable.getConfiguration();
+		write(file, "db.url=${undefined.variable.xyz}\n");
+		try {
+			reloadable.reload();
+			fail("Expected reload to fail");
+		} catch (IllegalConfigurationException e) {
+			assertSame(reloadable.getConfiguration(), current);
+		}
+
+		try {
+			reloadable.startWatching(-4294967295L);
+			fail("Expected negative polling interval to be rejected");
+		} catch (IllegalArgumentException e) {
+			assertFalse(reloadable.isWatching());
+		}
+		reloadable.startWatching(4294967296L);
+		assertTrue(reloadable.isWatching());
+		reloadable.stopWatching();
+	}
+
+	@Test
+	public void testLazyResolution() {
+		PropertyBasedConfiguration config = new PropertyBasedConfiguration(new StringReader("" +
+				"app.status.dir=${app.dir}/status\n" +
+				"app.dir=/opt/${app.name}\n" +
+				"app.name=demo\n" +
+				"empty=\n" +
+				"broken=${undefined.property.xyz}\n"), true);
+
+		assertEquals(config.getProperty("app.status.dir"), "/opt/demo/status");
+		assertSame(config.getProperty("app.status.dir"), config.getProperty("app.status.dir"));
+		assertEquals(config.getProperty("app.dir"), "/opt/demo");
+		assertNull(config.getProperty("empty"));
+		assertEquals(config.getProperty("missing", "default"), "default");
+		assertEquals(config.getInteger("missing", 5), Integer.valueOf(5));
+
+		try {
+			config.getProperty("broken");
+			fail("Expected undefined variable to be reported on access");
+		} catch (IllegalConfigurationException e) {
+			assertTrue(e.getMessage().contains("${undefined.property.xyz}"), e.getMessage());
+		}
+	}
+
+	@Test
+	public void testLoadPropertiesFile() throws Exception {
+		String content = "" +
+				"# comment\n" +
+				"   ! another comment \\\n" +
+				"a=1\r\n" +
+				"b : two words  \n" +
+				"c three\n" +
+				"d\n" +
+				"\n" +
+				"   \t\n" +
+				"e=multi\\\n" +
+				"     line\\\r\n" +
+				"   value\n" +
+				"f=escaped\\\\\n" +
+				"g=\\u00e3\\t\\=x\n" +
+				"key\\ with\\:separators=v\n" +
+				"h=\u00e3\u20ac\n" +
+				"a=overridden\n" +
+				"last=no newline";
+
+		File file = File.createTempFile("loader", ".properties");
+		file.deleteOnExit();
+		for (String charset : new String[]{"UTF-8", "ISO-8859-1", "UTF-16"}) {
+			OutputStream out = new FileOutputStream(file);
+			try {
+				out.write(content.getBytes(charset));
+			} finally {
+				out.close();
+			}
+
+			Properties expected = new Properties();
+			Reader reader = new InputStreamReader(new FileInputStream(file), charset);
+			try {
+				expected.load(reader);
+			} finally {
+				reader.close();
+			}
+
+			OrderedProperties loaded = new OrderedProperties();
+			loaded.load(file, java.nio.charset.Charset.forName(charset));
+			assertEquals(loaded, expected, charset);
+			assertEquals(Collections.list(loaded.propertyNames()), Arrays.asList("b", "c", "d", "e", "f", "g", "key with:separators", "h", "a", "last"));
+		}
+	}
+
+	@Test
+	public void testOrderedProperties() {
+		OrderedProperties properties = new OrderedProperties();
+		for (int i = 0; i < 100; i++) {
+			properties.setProperty("k" + i, "v" + i);
+		}
+		for (int i = 0; i < 100; i += 2) {
+			properties.remove("k" + i);
+		}
+		properties.setProperty("k1", "updated");
+		for (int i = 100; i < 200; i++) {
+			properties.put("k" + i, "v" + i);
+		}
+
+		assertEquals(properties.size(), 150);
+		assertEquals(properties.getProperty("k1"), "updated");
+		assertNull(properties.getProperty("k0"));
+		assertEquals(properties.getProperty("k0", "default"), "default");
+
+		List<Object> keys = Collections.list(properties.keys());
+		assertEquals(keys.get(0), "k3");
+		assertEquals(keys.get(48), "k99");
+		assertEquals(keys.get(49), "k1");
+		assertEquals(keys.get(149), "k199");
+
+		Iterator<Object> iterator = properties.keySet().iterator();
+		while (iterator.hasNext()) {
+			if (!"k1".equals(iterator.next())) {
+				iterator.remove();
+			}
+		}
+		assertEquals(properties.size(), 1);
+		assertEquals(properties.stringPropertyNames(), Collections.singleton("k1"));
+	}
+
+	/**
+	 * Creates an implementation of a functional interface of {@code java.util.function}, which can't be referenced
+	 * directly as this project targets Java 6.
+	 */
+	private static Object function(String type, InvocationHandler handler) {
+		try {
+			Class<?> interfaceType = Class.forName("java.util.function." + type);
+			return Proxy.newProxyInstance(interfaceType.getClassLoader(), new Class[]{interfaceType}, handler);
+		} catch (ClassNotFoundException e) {
+			throw new SkipException("Java 8 functional interfaces are not available");
+		}
+	}
+
+	private static Object invoke(Object target, String method, String type, Object... args) throws Exception {
+		Class<?>[] parameterTypes = new Class[args.length];
+		for (int i = 0; i < args.length; i++) {
+			parameterTypes[i] = Object.class;
+		}
+		parameterTypes[args.length - 1] = Class.forName("java.util.function." + type);
+		return Map.class.getMethod(method, parameterTypes).invoke(target, args);
+	}
+
+	@Test
+	public void testJava8MapMethodsOnOrderedProperties() throws Exception {
+		OrderedProperties properties = new OrderedProperties();
+		properties.setProperty("a", "1");
+		properties.setProperty("b", "2");
+
+		final Map<Object, Object> seen = new LinkedHashMap<Object, Object>();
+		invoke(properties, "forEach", "BiConsumer", function("BiConsumer", new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				seen.put(args[0], args[1]);
+				return null;
+			}
+		}));
+		assertEquals(seen.size(), 2);
+		assertEquals(seen.get("a"), "1");
+		assertEquals(seen.get("b"), "2");
+
+		Object computed = invoke(properties, "computeIfAbsent", "Function", "c", function("Function", new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				return args[0] + "3";
+			}
+		}));
+		assertEquals(computed, "c3");
+		assertEquals(properties.getProperty("c"), "c3");
+
+		Object merged = invoke(properties, "merge", "BiFunction", "a", "0", function("BiFunction", new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				return String.valueOf(args[0]) + args[1];
+			}
+		}));
+		assertEquals(merged, "10");
+		assertEquals(properties.get("a"), "10");
+		assertEquals(properties.size(), 3);
+
+		assertEquals(Collections.list(properties.keys()), Arrays.<Object>asList("a", "b", "c"));
+		assertEquals(properties.toString(), "{a=10, b=2, c=c3}");
+
+		invoke(properties, "computeIfPresent", "BiFunction", "b", function("BiFunction", new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				return null;
+			}
+		}));
+		assertNull(properties.getProperty("b"));
+		assertEquals(Collections.list(properties.keys()), Arrays.<Object>asList("a", "c"));
+		assertEquals(properties.stringPropertyNames(), new LinkedHashSet<String>(Arrays.asList("a", "c")));
+
+		//removes one key and adds another between iterations, keeping the size unchanged
+		invoke(properties, "computeIfPresent", "BiFunction", "a", function("BiFunction", new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				return null;
+			}
+		}));
+		invoke(properties, "computeIfAbsent", "Function", "d", function("Function", new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				return "4";
+			}
+		}));
+		assertEquals(properties.size(), 2);
+		assertEquals(Collections.list(properties.keys()), Arrays.<Object>asList("c", "d"));
+		assertEquals(properties.toString(), "{c=c3, d=4}");
+	}
+
+	@Test
+	public void testConcurrentOrderedProperties() throws Exception {
+		final OrderedProperties properties = new OrderedProperties();
+		for (int i = 0; i < 1000; i++) {
+			properties.setProperty("fixed" + i, "v" + i);
+		}
+
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final List<String> errors = new CopyOnWriteArrayList<String>();
+
+		Thread writer = new Thread() {
+			@Override
+			public void run() {
+				for (int round = 0; round < 200; round++) {
+					for (int i = 0; i < 100; i++) {
+						properties.setProperty("temp" + i, "r" + round);
+						properties.setProperty("fixed" + (i * 7 % 1000), "v" + (i * 7 % 1000));
+					}
+					for (int i = 0; i < 100; i++) {
+						properties.remove("temp" + i);
+					}
+				}
+				running.set(false);
+			}
+		};
+
+		Thread[] readers = new Thread[4];
+		for (int r = 0; r < readers.length; r++) {
+			readers[r] = new Thread() {
+				@Override
+				public void run() {
+					while (running.get()) {
+						for (int i = 0; i < 1000; i += 13) {
+							if (!("v" + i).equals(properties.getProperty("fixed" + i))) {
+								errors.add("Missing value of fixed" + i);
+							}
+						}
+						Set<Object> seen = new HashSet<Object>();
+						int fixed = 0;
+						for (Map.Entry<Object, Object> e : properties.entrySet()) {
+							if (e.getKey().toString().startsWith("fixed")) {
+								if (!seen.add(e.getKey())) {
+									errors.add("Duplicate key " + e.getKey());
+								}
+								fixed++;
+							}
+						}
+						if (fixed != 1000) {
+							errors.add("Iterated over " + fixed + " fixed keys");
+						}
+					}
+				}
+			};
+			readers[r].start();
+		}
+		writer.start();
+		writer.join();
+		for (Thread reader : readers) {
+			reader.join();
+		}
+
+		assertTrue(errors.isEmpty(), errors.isEmpty() ? "" : errors.get(0));
+		assertEquals(properties.size(), 1000);
+	}
+
+	@Test
+	public void testLayersAndScopes() throws Exception {
+		File defaults = File.createTempFile("defaults", ".properties");
+		File environment = File.createTempFile("environment", ".properties");
+		File host = new File(environment.getParentFile(), "missing-host-" + System.nanoTime() + ".properties");
+		defaults.deleteOnExit();
+		environment.deleteOnExit();
+
+		write(defaults, "" +
+				"app.name=demo\n" +
+				"db.host=localhost\n" +
+				"db.url=jdbc:test://${db.host}/${app.name}\n" +
+				"db.pool.size=4\n");
+		write(environment, "" +
+				"db.host=db.prod\n" +
+				"db.pool.size=16\n");
+
+		for (boolean lazy : new boolean[]{false, true}) {
+			PropertyBasedConfiguration config = new PropertyBasedConfiguration(new File[]{defaults, environment, host}, lazy);
+			assertEquals(config.getProperty("db.url"), "jdbc:test://db.prod/demo");
+
+			PropertyBasedConfiguration db = config.scope("db.");
+			assertEquals(db.getScope(), "db.");
+			assertEquals(db.getProperty("url"), "jdbc:test://db.prod/demo");
+			assertEquals(db.getProperty("app.name", "none"), "none");
+			assertEquals(new ArrayList<String>(db.getValues().keySet()), Arrays.asList("url", "host", "pool.size"));
+
+			PropertyBasedConfiguration pool = db.scope("pool.");
+			assertEquals(pool.getScope(), "db.pool.");
+			assertEquals(pool.getInteger("size"), Integer.valueOf(16));
+			assertEquals(pool.getValues().size(), 1);
+
+			try {
+				pool.getProperty("url");
+				fail("Expected property out of scope to be reported as missing");
+			} catch (IllegalConfigurationException e) {
+				assertTrue(e.getMessage().contains("db.pool."), e.getMessage());
+			}
+		}
+
+		try {
+			new PropertyBasedConfiguration(new File[]{host}, false);
+			fail("Expected error when no layers exist");
+		} catch (IllegalConfigurationException e) {
+			//expected
+		}
+	}
+
+	@Test
+	public void testPathValidationCache() throws Exception {
+		File base = new File(System.getProperty("java.io.tmpdir"), "validation-" + System.nanoTime());
+		String path = base.getAbsolutePath().replace("\\", "/");
+		PropertyBasedConfiguration config = configuration("" +
+				"base.dir=" + path + "\n" +
+				"input.dir=${base.dir}/input\n" +
+				"output.dir=${base.dir}/output\n" +
+				"log.file=${base.dir}/app.log\n");
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			config.setValidationCacheTimeout(1, TimeUnit.HOURS);
+			config.validateDirectories(executor, true, true, true, "input.dir", "output.dir");
+			assertTrue(new File(base, "input").isDirectory());
+			assertTrue(new File(base, "output").isDirectory());
+
+			File log = new File(base, "app.log");
+			write(log, "");
+			config.validateFiles(executor, true, false, false, "log.file");
+
+			assertTrue(log.delete());
+			File cached = config.getFile("log.file", true, false, false);
+			assertEquals(cached, log);
+			assertSame(config.scope("log.").getFile("file", true, false, false), cached);
+
+			try {
+				config.validateAll(executor);
+				fail("Expected deleted file to be reported");
+			} catch (IllegalConfigurationException e) {
+				assertTrue(e.getMessage().contains("does not exist"), e.getMessage());
+				assertTrue(e.getMessage().contains("log.file"), e.getMessage());
+			}
+			try {
+				config.getFile("log.file", true, false, false);
+				fail("Expected invalid file to be removed from cache");
+			} catch (IllegalConfigurationException e) {
+				//expected
+			}
+
+			File output = config.getDirectory("output.dir", true, true, false);
+			assertTrue(output.delete());
+			assertSame(config.getDirectory("output.dir", true, true, false), output);
+
+			config.setValidationCacheTimeout(0, TimeUnit.MILLISECONDS);
+			try {
+				config.getDirectory("output.dir", true, true, false);
+				fail("Expected deleted directory to be reported");
+			} catch (IllegalConfigurationException e) {
+				assertTrue(e.getMessage().contains("does not exist"), e.getMessage());
+			}
+		} finally {
+			executor.shutdown();
+			new File(base, "input").delete();
+			new File(base, "output").delete();
+			base.delete();
+		}
+	}
+
+	@Test
+	public void testValidateAllDeclaredPaths() throws Exception {
+		File base = new File(System.getProperty("java.io.tmpdir"), "declared-" + System.nanoTime());
+		String path = base.getAbsolutePath().replace("\\", "/");
+		PropertyBasedConfiguration config = new PropertyBasedConfiguration(new StringReader("" +
+				"base.dir=" + path + "\n" +
+				"input.dir=${base.dir}/input\n" +
+				"work.dir=${base.dir}/work\n"), true);
+
+		config.scope("input.").declareDirectory("dir", true, true, false, false);
+		config.declareDirectory("work.dir", true, true, true, true);
+		config.declareFile("missing.file", false, true, false, false);
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			try {
+				config.validateAll(executor);
+				fail("Expected missing directory to be reported");
+			} catch (IllegalConfigurationException e) {
+				assertTrue(e.getMessage().contains("does not exist"), e.getMessage());
+				assertTrue(e.getMessage().contains("input.dir"), e.getMessage());
+				assertFalse(e.getMessage().contains("work.dir"), e.getMessage());
+			}
+			assertTrue(new File(base, "work").isDirectory());
+
+			assertTrue(new File(base, "input").mkdirs());
+			config.validateAll(executor);
+
+			config.declareFile("missing.file", true, true, false, false);
+			try {
+				config.validateAll(executor);
+				fail("Expected undefined file to be reported");
+			} catch (IllegalConfigurationException e) {
+				assertTrue(e.getMessage().contains("missing.file"), e.getMessage());
+			}
+		} finally {
+			executor.shutdown();
+			new File(base, "input").delete();
+			new File(base, "work").delete();
+			base.delete();
+		}
+	}
+
+	@Test
+	public void testConfigurationSnapshot() throws Exception {
+		File source = File.createTempFile("source", ".properties");
+		File snapshot = new File(source.getParentFile(), source.getName() + ".snapshot");
+		source.deleteOnExit();
+		snapshot.deleteOnExit();
+
+		String key = "snapshot.test." + System.nanoTime();
+		System.setProperty(key, "a");
+		try {
+			write(source, "" +
+					"home=${user.home}\n" +
+					"sys=${" + key + "}\n" +
+					"empty=\n" +
+					"batch.dir=${home}batch_!{batch}\n" +
+					"text=caf\\u00E9 ${sys}\n");
+
+			PropertyBasedConfiguration loaded = ConfigurationSnapshot.load(source, snapshot);
+			assertTrue(snapshot.isFile());
+			Map<String, String> expected = loaded.getValues();
+			assertEquals(expected.get("text"), "caf\u00E9 a");
+
+			long modified = snapshot.lastModified();
+			PropertyBasedConfiguration fromSnapshot = ConfigurationSnapshot.load(source, snapshot);
+			assertEquals(snapshot.lastModified(), modified);
+			assertEquals(fromSnapshot.getValues(), expected);
+			assertEquals(new ArrayList<String>(fromSnapshot.getValues().keySet()), new ArrayList<String>(expected.keySet()));
+			assertNull(fromSnapshot.getProperty("empty"));
+			assertEquals(fromSnapshot.getProperty("batch.dir", "batch", "1"), loaded.getProperty("batch.dir", "batch", "1"));
+
+			System.setProperty(key, "b");
+			assertEquals(ConfigurationSnapshot.load(source, snapshot).getProperty("text"), "caf\u00E9 b");
+
+			write(source, "text=changed\n");
+			assertEquals(ConfigurationSnapshot.load(source, snapshot).getValues(), Collections.singletonMap("text", "changed"));
+
+			RandomAccessFile corrupt = new RandomAccessFile(snapshot, "rw");
+			try {
+				corrupt.seek(corrupt.length() - 12);
+				corrupt.write('X');
+			} finally {
+				corrupt.close();
+			}
+			assertEquals(ConfigurationSnapshot.load(source, snapshot).getProperty("text"), "changed");
+
+			write(source, "text=${" + key + "}\n");
+			ConfigurationSnapshot.write(new PropertyBasedConfiguration(source, true), source, snapshot);
+			System.setProperty(key, "c");
+			assertEquals(ConfigurationSnapshot.load(source, snapshot).getProperty("text"), "c");
+
+			try {
+				ConfigurationSnapshot.write(new PropertyBasedConfiguration(source).scope("te"), source, snapshot);
+				fail("Expected scoped configuration to be rejected");
+			} catch (IllegalArgumentException e) {
+				//expected
+			}
+			try {
+				ConfigurationSnapshot.write(new PropertyBasedConfiguration(new File[]{source, source}, false), source, snapshot);
+				fail("Expected layered configuration to be rejected");
+			} catch (IllegalArgumentException e) {
+				//expected
+			}
+		} finally {
+			System.clearProperty(key);
+		}
+	}
+}
@@ -0,0 +1,402 @@
+/*
+ * Copyright (c) 2013 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ */
+
+package com.univocity.api.io;
+
+import org.testng.*;
+import org.testng.annotations.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.regex.*;
+
+import static org.testng.Assert.*;
+
+public class InputQueueTest {
+
+	private static String read(Reader reader) throws IOException {
+		StringBuilder out = new StringBuilder();
+		char[] buffer = new char[3];
+		int length;
+		while ((length = reader.read(buffer)) != -1) {
+			out.append(buffer, 0, length);
+		}
+		reader.close();
+		return out.toString();
+	}
+
+	@Test
+	public void testPrefetching() throws Exception {
+		final AtomicInteger opened = new AtomicInteger();
+		final AtomicInteger closed = new AtomicInteger();
+		final AtomicInteger maxOpen = new AtomicInteger();
+
+		InputReaderQueue queue = new InputReaderQueue();
+		for (int i = 0; i < 20; i++) {
+			final String content = "input " + i + " with some content";
+			queue.add(new ReaderProvider() {
+				@Override
+				public Reader getResource() {
+					int open = opened.incrementAndGet() - closed.get();
+					if (open > maxOpen.get()) {
+						maxOpen.set(open);
+					}
+					return new StringReader(content) {
+						@Override
+						public void close() {
+							closed.incrementAndGet();
+							super.close();
+						}
+					};
+				}
+			});
+			queue.assignVariableToLastEntry("index", i);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			queue.enablePrefetching(executor, 3, 8);
+			int i = 0;
+			while (!queue.isEmpty()) {
+				Reader reader = queue.getResource();
+				assertEquals(queue.readVariable("index"), i);
+				assertEquals(read(reader), "input " + i + " with some content");
+				assertTrue(queue.size() <= 20 - i - 1);
+				i++;
+			}
+			assertEquals(i, 20);
+			assertEquals(closed.get(), 20);
+			assertTrue(maxOpen.get() <= 4, "Opened " + maxOpen.get() + " inputs ahead");
+		} finally {
+			executor.shutdown();
+		}
+
+		try {
+			queue.getResource();
+			fail("Expected empty queue to be reported");
+		} catch (IllegalStateException e) {
+			//expected
+		}
+	}
+
+	private static InputReaderQueue numberedInputs(int count) {
+		InputReaderQueue queue = new InputReaderQueue();
+		for (int i = 0; i < count; i++) {
+			queue.add(new StringReader(String.valueOf(i)));
+			queue.assignVariableToLastEntry("index", i);
+		}
+		return queue;
+	}
+
+	@Test
+	public void testConcurrentConsumers() throws Exception {
+		final int inputs = 2000;
+		for (boolean prefetch : new boolean[]{false, true}) {
+			final InputReaderQueue source = numberedInputs(inputs);
+			ExecutorService prefetcher = Executors.newFixedThreadPool(2);
+			if (prefetch) {
+				source.enablePrefetching(prefetcher, 4, 16);
+			}
+
+			final AtomicIntegerArray claimed = new AtomicIntegerArray(inputs);
+			final List<String> errors = new CopyOnWriteArrayList<String>();
+			Thread[] workers = new Thread[8];
+			for (int w = 0; w < workers.length; w++) {
+				workers[w] = new Thread() {
+					@Override
+					public void run() {
+						try {
+							QueuedInput<ReaderProvider> input;
+							while ((input = source.next()) != null) {
+								int index = input.readVariable("index", Integer.class);
+								if (!read(input.getReader()).equals(String.valueOf(index))) {
+									errors.add("Unexpected content for input " + index);
+								}
+								claimed.incrementAndGet(index);
+							}
+						} catch (Exception e) {
+							errors.add(e.toString());
+						}
+					}
+				};
+				workers[w].start();
+			}
+			for (Thread worker : workers) {
+				worker.join();
+			}
+			prefetcher.shutdown();
+
+			assertTrue(errors.isEmpty(), errors.isEmpty() ? "" : errors.get(0));
+			for (int i = 0; i < inputs; i++) {
+				assertEquals(claimed.get(i), 1, "Input " + i + " claimed " + claimed.get(i) + " times");
+			}
+			assertTrue(source.isEmpty());
+			assertNull(source.next());
+		}
+	}
+
+	private static void write(File file, String content) throws IOException {
+		file.getParentFile().mkdirs();
+		Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			out.write(content);
+		} finally {
+			out.close();
+		}
+	}
+
+	private static File tempDirectory() throws IOException {
+		File dir = File.createTempFile("queue", "");
+		dir.delete();
+		return dir;
+	}
+
+	private static void delete(File file) {
+		//symbolic links are deleted without following them, so only non-empty directories are traversed
+		if (!file.delete() && file.isDirectory()) {
+			File[] children = file.listFiles();
+			if (children != null) {
+				for (File child : children) {
+					delete(child);
+				}
+			}
+			file.delete();
+		}
+	}
+
+	private static InputFileQueue fileQueue() {
+		return new InputFileQueue() {
+			@Override
+			protected Reader open(FileProvider input) {
+				try {
+					return new InputStreamReader(new FileInputStream(input.getFile()), input.getEncoding());
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		};
+	}
+
+	@Test
+	public void testDirectoryScanning() throws Exception {
+		File dir = tempDirectory();
+		try {
+			write(new File(dir, "sales_us_2013.csv"), "us");
+			write(new File(dir, "sales_au_2014.csv"), "au");
+			write(new File(dir, "notes.txt"), "ignored");
+			write(new File(dir, "archive/sales_nz_2012.csv"), "nz");
+
+			InputFileQueue queue = fileQueue();
+			queue.addFile(new File(dir, "notes.txt"));
+			queue.assignVariableToLastEntry("region", "none");
+			queue.addDirectory(dir, "sales_*_*.csv", true, Charset.forName("UTF-8"), "region", "year");
+			try {
+				queue.assignVariableToLastEntry("region", "none");
+				fail("Expected variables of lazily enumerated inputs to be rejected");
+			} catch (IllegalArgumentException e) {
+				//expected
+			}
+			queue.addDirectory(dir, Pattern.compile("sales_(\\w+)_\\d+\\.csv"), false, null, "region");
+
+			List<String> read = new ArrayList<String>();
+			while (!queue.isEmpty()) {
+				Reader reader = queue.getResource();
+				read.add(queue.readVariable("region") + ":" + queue.readVariable("year") + ":" + read(reader));
+			}
+			assertEquals(read, Arrays.asList("none:null:ignored", "nz:2012:nz", "au:2014:au", "us:2013:us", "au:null:au", "us:null:us"));
+
+			try {
+				queue.addDirectory(dir, "sales_*.csv", false, null, "region", "year");
+				fail("Expected more variables than wildcards to be rejected");
+			} catch (IllegalArgumentException e) {
+				//expected
+			}
+			try {
+				queue.addDirectory(new File(dir, "missing"), "*", false, null);
+				fail("Expected missing directory to be rejected");
+			} catch (IllegalArgumentException e) {
+				//expected
+			}
+		} finally {
+			delete(dir);
+		}
+	}
+
+	@Test
+	public void testSymbolicLinkCyclesAreNotFollowed() throws Exception {
+		File dir = tempDirectory();
+		try {
+			write(new File(dir, "top.csv"), "top");
+			write(new File(dir, "sub/nested.csv"), "nested");
+
+			File link = new File(dir, "sub/loop");
+			try {
+				Process ln = Runtime.getRuntime().exec(new String[]{"ln", "-s", dir.getAbsolutePath(), link.getAbsolutePath()});
+				if (ln.waitFor() != 0 || !link.isDirectory()) {
+					throw new SkipException("Unable to create symbolic link " + link.getAbsolutePath());
+				}
+			} catch (IOException e) {
+				throw new SkipException("Symbolic links are not supported: " + e.getMessage());
+			}
+
+			InputFileQueue queue = fileQueue();
+			queue.addDirectory(dir, "*.csv", true, null);
+
+			List<String> read = new ArrayList<String>();
+			while (!queue.isEmpty()) {
+				read.add(read(queue.getResource()));
+			}
+			assertEquals(read, Arrays.asList("nested", "top"));
+		} finally {
+			delete(dir);
+		}
+	}
+
+	@Test
+	public void testSchedulingPolicies() throws Exception {
+		File dir = tempDirectory();
+		try {
+			write(new File(dir, "a/small.txt"), "1");
+			write(new File(dir, "a/large.txt"), "1234567890");
+			write(new File(dir, "b/medium.txt"), "12345");
+			write(new File(dir, "b/tiny.txt"), "");
+			write(new File(dir, "c/big.txt"), "1234567");
+
+			Map<FileSchedulingPolicy, String> expected = new LinkedHashMap<FileSchedulingPolicy, String>();
+			expected.put(FileSchedulingPolicy.INSERTION_ORDER, "[large.txt, small.txt, medium.txt, tiny.txt, big.txt]");
+			expected.put(FileSchedulingPolicy.LARGEST_FIRST, "[large.txt, big.txt, medium.txt, small.txt, tiny.txt]");
+			expected.put(FileSchedulingPolicy.SMALLEST_FIRST, "[tiny.txt, small.txt, medium.txt, big.txt, large.txt]");
+			expected.put(FileSchedulingPolicy.ROUND_ROBIN_BY_DIRECTORY, "[large.txt, medium.txt, big.txt, small.txt, tiny.txt]");
+
+			for (Map.Entry<FileSchedulingPolicy, String> e : expected.entrySet()) {
+				InputFileQueue queue = fileQueue();
+				queue.addFile(new File(dir, "a/large.txt"));
+				queue.addDirectory(dir, Pattern.compile("(?!large).*\\.txt"), true, null);
+				queue.setSchedulingPolicy(e.getKey());
+
+				List<String> order = new ArrayList<String>();
+				while (!queue.isEmpty()) {
+					String name = queue.peek().getFile().getName();
+					QueuedInput<FileProvider> input = queue.next();
+					assertEquals(input.getInput().getFile().getName(), name);
+					input.close();
+					order.add(name);
+				}
+				assertEquals(order.toString(), e.getValue(), e.getKey().toString());
+				assertEquals(queue.size(), 0);
+			}
+		} finally {
+			delete(dir);
+		}
+	}
+
+	@Test
+	public void testSchedulingFilesAddedByPath() throws Exception {
+		File dir = tempDirectory();
+		try {
+			write(new File(dir, "a/small.txt"), "1");
+			write(new File(dir, "b/large.txt"), "1234567890");
+
+			for (FileSchedulingPolicy policy : FileSchedulingPolicy.values()) {
+				InputFileQueue queue = new InputFileQueue() {
+					@Override
+					protected Reader open(FileProvider input) {
+						return new StringReader(input.getFilePath());
+					}
+				};
+				queue.addFile("resource/not/in/filesystem.txt");
+				queue.addFile(new File(dir, "a/small.txt").getAbsolutePath());
+				queue.addFile(new File(dir, "b/large.txt").getAbsolutePath());
+				queue.setSchedulingPolicy(policy);
+				assertEquals(queue.size(), 3);
+
+				List<String> order = new ArrayList<String>();
+				while (!queue.isEmpty()) {
+					QueuedInput<FileProvider> input = queue.next();
+					assertNull(input.getInput().getFile());
+					String path = read(input.getReader());
+					order.add(path.substring(path.lastIndexOf('/') + 1));
+				}
+				String expected = policy == FileSchedulingPolicy.LARGEST_FIRST ? "[large.txt, small.txt, filesystem.txt]" : "[filesystem.txt, small.txt, large.txt]";
+				assertEquals(order.toString(), expected, policy.toString());
+			}
+		} finally {
+			delete(dir);
+		}
+	}
+
+	@Test
+	public void testSchedulingWindow() throws Exception {
+		File dir = tempDirectory();
+		try {
+			write(new File(dir, "a.txt"), "1");
+			write(new File(dir, "b.txt"), "12345");
+			write(new File(dir, "c.txt"), "123");
+			write(new File(dir, "d.txt"), "1234");
+			write(new File(dir, "e.txt"), "12");
+
+			InputFileQueue queue = fileQueue();
+			queue.addDirectory(dir, "*.txt", false, null);
+			queue.setSchedulingPolicy(FileSchedulingPolicy.LARGEST_FIRST, 2);
+			assertEquals(queue.peek().getFile().getName(), "b.txt");
+			assertEquals(queue.size(), 2, "Only the files in the scheduling window should be enumerated");
+
+			List<String> order = new ArrayList<String>();
+			QueuedInput<FileProvider> input;
+			while ((input = queue.next()) != null) {
+				order.add(input.getInput().getFile().getName());
+				input.close();
+			}
+			assertEquals(order, Arrays.asList("b.txt", "c.txt", "d.txt", "e.txt", "a.txt"));
+
+			try {
+				queue.setSchedulingPolicy(FileSchedulingPolicy.LARGEST_FIRST, 0);
+				fail("Expected empty scheduling window to be rejected");
+			} catch (IllegalArgumentException e) {
+				//expected
+			}
+		} finally {
+			delete(dir);
+		}
+	}
+
+	@Test
+	public void testReschedulingPendingFiles() throws Exception {
+		File dir = tempDirectory();
+		try {
+			String[] names = {"b.txt", "c.txt", "a.txt"};
+			for (int i = 0; i < names.length; i++) {
+				write(new File(dir, names[i]), "123".substring(0, i + 1));
+			}
+
+			InputFileQueue queue = fileQueue();
+			for (String name : names) {
+				queue.addFile(new File(dir, name));
+				queue.assignVariableToLastEntry("name", name);
+			}
+			queue.setSchedulingPolicy(FileSchedulingPolicy.LARGEST_FIRST);
+			assertEquals(queue.peek().getFile().getName(), "a.txt");
+			assertEquals(queue.size(), 3);
+
+			queue.setSchedulingPolicy(FileSchedulingPolicy.SMALLEST_FIRST);
+			assertEquals(queue.peek().getFile().getName(), "b.txt");
+
+			queue.setSchedulingPolicy(FileSchedulingPolicy.INSERTION_ORDER);
+			assertEquals(queue.size(), 3);
+			for (String name : names) {
+				QueuedInput<FileProvider> input = queue.next();
+				assertEquals(input.readVariable("name"), name);
+				input.close();
+			}
+			assertNull(queue.next());
+		} finally {
+			delete(dir);
+		}
+	}
+}
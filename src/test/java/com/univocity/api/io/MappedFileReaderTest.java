@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2013 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ */
+
+package com.univocity.api.io;
+
+import org.testng.annotations.*;
+
+import java.io.*;
+import java.nio.charset.*;
+
+import static org.testng.Assert.*;
+
+public class MappedFileReaderTest {
+
+	private static File write(byte[] content) throws IOException {
+		File file = File.createTempFile("mapped", ".txt");
+		file.deleteOnExit();
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	private static String read(Reader reader, int bufferSize) throws IOException {
+		StringBuilder out = new StringBuilder();
+		char[] buffer = new char[bufferSize];
+		int length;
+		try {
+			if (bufferSize == 1) {
+				int ch;
+				while ((ch = reader.read()) != -1) {
+					out.append((char) ch);
+				}
+			} else {
+				while ((length = reader.read(buffer, 0, bufferSize)) != -1) {
+					assertTrue(length > 0);
+					out.append(buffer, 0, length);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return out.toString();
+	}
+
+	@Test
+	public void testDecodingAcrossWindows() throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 50; i++) {
+			text.append("line ").append(i).append(", caf\u00E9 \u20AC \uD83D\uDE00 \u00FF\n");
+		}
+		String[] encodings = {"UTF-8", "ISO-8859-1", "US-ASCII", "UTF-16", "windows-1252"};
+		for (String name : encodings) {
+			Charset encoding = Charset.forName(name);
+			byte[] bytes = text.toString().getBytes(encoding);
+			File file = write(bytes);
+			String expected = read(new InputStreamReader(new ByteArrayInputStream(bytes), encoding), 64);
+
+			for (int windowSize : new int[]{16, 17, 31, MappedFileReader.DEFAULT_WINDOW_SIZE}) {
+				for (int bufferSize : new int[]{1, 2, 7, 4096}) {
+					String result = read(new MappedFileReader(file, encoding, windowSize), bufferSize);
+					assertEquals(result, expected, name + " with window of " + windowSize + " bytes and buffer of " + bufferSize + " chars");
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testMalformedInput() throws Exception {
+		Charset utf8 = Charset.forName("UTF-8");
+		byte[] bytes = {'a', (byte) 0xC3, 'b', (byte) 0xE2, (byte) 0x82};
+		File file = write(bytes);
+		String expected = read(new InputStreamReader(new ByteArrayInputStream(bytes), utf8), 64);
+		assertEquals(read(new MappedFileReader(file, utf8, 16), 64), expected);
+		assertEquals(read(new MappedFileReader(file, utf8, 16), 1), expected);
+
+		assertEquals(read(new MappedFileReader(write(new byte[0]), utf8, 16), 64), "");
+	}
+
+	@Test
+	public void testFileProviderOption() throws Exception {
+		File file = write("a,b,c\n1,2,3".getBytes("UTF-8"));
+		FileProvider provider = new FileProvider(file, "UTF-8");
+		assertFalse(provider.isMemoryMapped());
+		provider.setMemoryMapped(true);
+
+		InputFileQueue queue = new InputFileQueue();
+		queue.addFile(provider);
+		QueuedInput<FileProvider> input = queue.next();
+		assertTrue(input.getReader() instanceof MappedFileReader);
+		assertEquals(read(input.getReader(), 4), "a,b,c\n1,2,3");
+
+		Reader reader = provider.openMappedReader();
+		reader.close();
+		try {
+			reader.read();
+			fail("Expected closed reader to be reported");
+		} catch (IOException e) {
+			//expected
+		}
+	}
+}